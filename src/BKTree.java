@@ -0,0 +1,242 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Represents a BK-tree mapping string keys to one or more values, for finding keys within an edit distance of a query.
+ * Every child hangs off its parent by its Levenshtein distance to the parent's key, so by the triangle inequality a
+ * search only descends into children whose distance lies within the query's reach of the parent's distance.
+ * Removed keys stay in the tree to keep routing intact and are dropped when the tree is rebuilt, once they
+ * outnumber the live keys.
+ *
+ * @param <V> the type of values stored in the tree.
+ */
+public class BKTree<V> {
+
+    // Removed keys are only purged once there are at least this many
+    private static final int MIN_REBUILD = 64;
+
+    /**
+     * Action run on every match of a search.
+     *
+     * @param <V> the type of values stored in the tree.
+     */
+    @FunctionalInterface
+    public interface Visitor<V> {
+        /**
+         * Visits a value stored under a matching key.
+         *
+         * @param key      the key.
+         * @param distance the edit distance from the query to the key.
+         * @param value    the value.
+         */
+        void accept(String key, int distance, V value);
+    }
+
+    /**
+     * Represents a node of the tree holding one key.
+     *
+     * @param <V> the type of values stored in the tree.
+     */
+    private static class BKNode<V> {
+        final String key;
+        // The values stored under the key, empty once the key has been removed
+        final List<V> values = new ArrayList<>(1);
+        // The children of this node keyed by their distance to it, null until the first child is added
+        Map<Integer, BKNode<V>> children;
+
+        BKNode(String key) {
+            this.key = key;
+        }
+    }
+
+    // The root of the tree, null while the tree is empty
+    private BKNode<V> root;
+
+    // The number of values in the tree
+    private int size = 0;
+
+    // The number of nodes and the number of nodes whose key has been removed
+    private int nodes = 0;
+    private int dead = 0;
+
+    /**
+     * Returns the number of values in the tree.
+     *
+     * @return the number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a value under a key.
+     *
+     * @param key   the key.
+     * @param value the value to add.
+     */
+    public void put(String key, V value) {
+        var node = findOrInsert(key);
+        if (node.values.isEmpty()) dead--;
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Removes a value stored under a key.
+     *
+     * @param key   the key.
+     * @param value the value to remove, compared by identity.
+     * @return true if the value was found and removed, false otherwise.
+     */
+    public boolean remove(String key, V value) {
+        var node = find(key);
+        if (node == null) return false;
+        for (int i = 0; i < node.values.size(); i++) {
+            if (node.values.get(i) == value) {
+                node.values.remove(i);
+                size--;
+                if (node.values.isEmpty() && ++dead >= MIN_REBUILD && dead * 2 > nodes) rebuild();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every value whose key is within an edit distance of a query, closest keys first and ties by key.
+     *
+     * @param query       the query.
+     * @param maxDistance the largest edit distance to accept.
+     * @param visitor     the action to run on every match.
+     */
+    public void search(String query, int maxDistance, Visitor<V> visitor) {
+        var matches = new ArrayList<BKNode<V>>();
+        var distances = new HashMap<BKNode<V>, Integer>();
+        var stack = new ArrayList<BKNode<V>>();
+        if (root != null) stack.add(root);
+        while (!stack.isEmpty()) {
+            var node = stack.remove(stack.size() - 1);
+            int d = distance(query, node.key);
+            if (d <= maxDistance && !node.values.isEmpty()) {
+                matches.add(node);
+                distances.put(node, d);
+            }
+            if (node.children == null) continue;
+            // Only children at a distance in [d - maxDistance, d + maxDistance] from this node can be close enough
+            for (var entry : node.children.entrySet()) {
+                if (Math.abs(entry.getKey() - d) <= maxDistance) stack.add(entry.getValue());
+            }
+        }
+        matches.sort(Comparator.<BKNode<V>>comparingInt(distances::get).thenComparing(n -> n.key));
+        for (var node : matches) {
+            for (var value : node.values) visitor.accept(node.key, distances.get(node), value);
+        }
+    }
+
+    /**
+     * Finds the node holding a key.
+     *
+     * @param key the key.
+     * @return the node, or null if the key was never added.
+     */
+    private BKNode<V> find(String key) {
+        var node = root;
+        while (node != null) {
+            int d = distance(key, node.key);
+            if (d == 0) return node;
+            node = node.children == null ? null : node.children.get(d);
+        }
+        return null;
+    }
+
+    /**
+     * Finds the node holding a key, inserting one if the key was never added.
+     *
+     * @param key the key.
+     * @return the node.
+     */
+    private BKNode<V> findOrInsert(String key) {
+        if (root == null) return root = newNode(key);
+        var node = root;
+        while (true) {
+            int d = distance(key, node.key);
+            if (d == 0) return node;
+            if (node.children == null) node.children = new HashMap<>();
+            var child = node.children.get(d);
+            if (child == null) {
+                child = newNode(key);
+                node.children.put(d, child);
+                return child;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Creates a node for a key with no values yet, counted as removed until a value is added.
+     *
+     * @param key the key.
+     * @return the node.
+     */
+    private BKNode<V> newNode(String key) {
+        nodes++;
+        dead++;
+        return new BKNode<>(key);
+    }
+
+    /**
+     * Rebuilds the tree from its live keys, dropping every removed key.
+     */
+    private void rebuild() {
+        var live = new ArrayList<BKNode<V>>();
+        var stack = new ArrayList<BKNode<V>>();
+        if (root != null) stack.add(root);
+        while (!stack.isEmpty()) {
+            var node = stack.remove(stack.size() - 1);
+            if (!node.values.isEmpty()) live.add(node);
+            if (node.children != null) stack.addAll(node.children.values());
+        }
+        root = null;
+        nodes = 0;
+        dead = 0;
+        for (var node : live) {
+            var copy = findOrInsert(node.key);
+            copy.values.addAll(node.values);
+            dead--;
+        }
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings.
+     *
+     * @param a the first string.
+     * @param b the second string.
+     * @return the number of single character insertions, deletions and substitutions turning one into the other.
+     */
+    static int distance(String a, String b) {
+        if (a.length() < b.length()) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        // Only two rows of the table are needed, sized by the shorter string
+        var previous = new int[b.length() + 1];
+        var current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char c = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (c == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitute, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            var t = previous;
+            previous = current;
+            current = t;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,175 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.InputMismatchException;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import utils.PrintUtils;
+
+import static utils.PrintUtils.print;
+import static utils.PrintUtils.println;
+
+/**
+ * Non-interactive mode for the virtual file system application.
+ * Reads one full command per line, e.g. "mkdir a/b" or "touch a/b/x.txt 100", and runs it without prompts or help
+ * banners, so long scripts can be replayed at full speed.
+ * Blank lines and lines starting with '#' are skipped, and "exit" stops the script early.
+ */
+public class BatchMode {
+
+    // Commands by name, each taking the rest of its line as arguments
+    private static final Map<String, BiConsumer<String, DirectoryTree>> COMMANDS = new HashMap<>();
+
+    static {
+        register(CommandMode::createFile, "create_file", "touch");
+        register(CommandMode::createDirectory, "create_directory", "mkdir");
+        register(CommandMode::delete, "delete", "rm");
+        register(CommandMode::move, "move", "mv");
+        register(Common::search, "search");
+        register(CommandMode::find, "find");
+        register(CommandMode::complete, "complete");
+        register((args, tree) -> tree.sortBy(args.toLowerCase()), "sort");
+        register(CommandMode::collation, "collation");
+        register(CommandMode::stat, "stat");
+        register(CommandMode::stats, "stats");
+        register(CommandMode::top, "top");
+        register(CommandMode::rename, "rename");
+        register(CommandMode::cd, "cd");
+        register((args, tree) -> Common.printWd(tree), "pwd");
+        register(CommandMode::relpath, "relpath");
+        register((args, tree) -> println(tree), "show_structure", "ls");
+        register((args, tree) -> print(Metrics.report()), "metrics");
+    }
+
+    /**
+     * Adds a command to the dispatch table under each of its names.
+     *
+     * @param command the command.
+     * @param names   the names of the command.
+     */
+    private static void register(BiConsumer<String, DirectoryTree> command, String... names) {
+        for (var name : names) COMMANDS.put(name, command);
+    }
+
+    /**
+     * Checks if batch mode has a command of a name.
+     *
+     * @param name the name of the command.
+     * @return true if the command exists, false otherwise.
+     */
+    static boolean isCommand(String name) {
+        return COMMANDS.containsKey(name);
+    }
+
+    /**
+     * Creates the sink batch output is written to.
+     *
+     * @param output "buffered" for a buffered writer on standard output, "channel" for the channel of standard output,
+     *               or "discard" to drop all output.
+     * @return the sink.
+     * @throws IllegalArgumentException if the output is not one of the above.
+     */
+    public static Writer sink(String output) {
+        return switch (output) {
+            case "buffered" -> PrintUtils.bufferedStdout(PrintUtils.DEFAULT_BUFFER);
+            case "channel" -> PrintUtils.stdoutChannel(PrintUtils.DEFAULT_BUFFER);
+            case "discard" -> PrintUtils.discard();
+            default -> throw new IllegalArgumentException("Invalid output: " + output);
+        };
+    }
+
+    /**
+     * Runs the commands of a script against a directory tree and reports the throughput on standard error.
+     * Output goes through a sink and is written out when it fills up, and between commands whenever the script has
+     * no further input ready, so piped commands still see their output promptly.
+     *
+     * @param script   the path of the script, or "-" to read standard input.
+     * @param output   the sink to write output to, see {@link #sink(String)}.
+     * @param parallel whether commands on unrelated paths run concurrently, see {@link ParallelBatch}.
+     * @param tree     the directory tree.
+     * @throws IOException if the script cannot be read.
+     */
+    public static void batchMode(String script, Writer output, boolean parallel, DirectoryTree tree)
+            throws IOException {
+        PrintUtils.setSink(output);
+        var executor = parallel ? new ParallelBatch(tree) : null;
+        long commands = 0, failed = 0;
+        long start = System.nanoTime();
+        try (var reader = script.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Path.of(script))) {
+            String line;
+            long number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (line.equals("exit")) break;
+                commands++;
+                if (executor != null) executor.add(number, line);
+                else if (!run(line, number, tree)) failed++;
+                if (!reader.ready()) {
+                    // Waiting on input, write out what the commands printed
+                    if (executor != null) executor.drain();
+                    PrintUtils.flush();
+                }
+            }
+            if (executor != null) {
+                executor.drain();
+                failed += executor.failed();
+            }
+        } finally {
+            PrintUtils.useConsole(); // Flushes whatever is left
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("Ran %d commands (%d failed) in %.3f s, %.0f commands/s\n", commands, failed, seconds,
+                commands / Math.max(seconds, 1e-9));
+    }
+
+    /**
+     * Runs a single command line, reporting an invalid command instead of stopping the script.
+     *
+     * @param line   the command line.
+     * @param number the line number in the script.
+     * @param tree   the directory tree.
+     * @return true if the command succeeded, false otherwise.
+     */
+    static boolean run(String line, long number, DirectoryTree tree) {
+        int space = line.indexOf(' ');
+        var name = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+        var args = space < 0 ? "" : line.substring(space + 1).strip();
+        var command = COMMANDS.get(name);
+        long started = System.nanoTime();
+        try {
+            if (command == null) throw new InputMismatchException("Invalid command");
+            command.accept(args, tree);
+            return true;
+        } catch (InputMismatchException | UnsupportedOperationException | IllegalArgumentException e) {
+            println(failure(number, e));
+        } finally {
+            if (command != null) Metrics.histogram("batch." + name).record(System.nanoTime() - started);
+        }
+        return false;
+    }
+
+    /**
+     * Describes a command that failed.
+     *
+     * @param number the line number of the command in the script.
+     * @param e      the exception the command failed with.
+     * @return the message reported for the command.
+     */
+    static String failure(long number, RuntimeException e) {
+        String kind;
+        if (e instanceof InputMismatchException) kind = "Invalid option";
+        else if (e instanceof UnsupportedOperationException) kind = "Invalid Operation";
+        else if (e instanceof NumberFormatException) kind = "Invalid number";
+        else kind = "Invalid argument";
+        return "Line " + number + ": " + kind + ": " + e.getMessage();
+    }
+}
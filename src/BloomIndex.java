@@ -0,0 +1,141 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index keeping, for directories at regular depths, counting Bloom filters of the case folded names of all items in
+ * their subtrees, so a search can skip any such directory whose filters show the name is definitely not below it.
+ * Folding lets the same filters serve both case sensitive and case insensitive searches.
+ * Only directories at every {@value #STRIDE}th depth below {@value #MAX_DEPTH} keep filters, so every name is counted
+ * by a bounded number of filters and the index grows linearly with the tree however deep it gets.
+ * A filter that is full is kept as it is and later names go to a new filter twice its size. Names removed while a
+ * directory has several filters stay counted, which only costs false positives, until they outnumber the names left
+ * and the filters are rebuilt as one.
+ */
+public class BloomIndex implements DirectoryIndex {
+
+    // Number of names the first filter of a directory is sized for
+    private static final int INITIAL_CAPACITY = 8;
+
+    // Distance between the depths of directories keeping filters
+    private static final int STRIDE = 4;
+
+    // Depth from which directories no longer keep filters
+    private static final int MAX_DEPTH = 32;
+
+    /**
+     * Represents the filters of one directory and the number of names counted by them
+     */
+    private static class Summary {
+        final List<CountingBloomFilter> filters = new ArrayList<>(List.of(new CountingBloomFilter(INITIAL_CAPACITY)));
+        int capacity = INITIAL_CAPACITY; // Capacity of the last filter
+        int used = 0; // Names added to the last filter
+        int count = 0; // Names below the directory
+        int stale = 0; // Names removed from below the directory but still counted by the filters
+    }
+
+    // Summaries of the directories keeping filters and holding at least one item
+    private final Map<TreeNode<FileSystem>, Summary> summaries = new HashMap<>();
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        var name = NameOrder.fold(node.data.getName());
+        for (var dir = (GeneralTreeNode<FileSystem>) node.parent; dir != null;
+             dir = (GeneralTreeNode<FileSystem>) dir.parent) {
+            if (summarized(dir)) add(summaries.computeIfAbsent(dir, k -> new Summary()), name);
+        }
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        var name = NameOrder.fold(node.data.getName());
+        for (var dir = (GeneralTreeNode<FileSystem>) node.parent; dir != null;
+             dir = (GeneralTreeNode<FileSystem>) dir.parent) {
+            var summary = summaries.get(dir);
+            if (summary == null) continue;
+            if (--summary.count <= 0) {
+                summaries.remove(dir);
+            } else if (summary.filters.size() == 1) {
+                summary.filters.get(0).remove(name);
+                summary.used--;
+            } else if (++summary.stale > summary.count) {
+                rebuild(dir, summary, node);
+            }
+        }
+    }
+
+    /**
+     * Checks if an item with a name may be below a directory.
+     *
+     * @param dir    the directory.
+     * @param folded the case folded name of the item.
+     * @return false if no item below the directory has the name in any case, true if one may have.
+     */
+    public boolean mightContain(GeneralTreeNode<FileSystem> dir, String folded) {
+        if (!summarized(dir)) return true; // Nothing is known about the names below
+        var summary = summaries.get(dir);
+        if (summary == null) return false; // Nothing below
+        for (var filter : summary.filters) {
+            if (filter.mightContain(folded)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks if a directory keeps filters of the names below it.
+     *
+     * @param dir the directory.
+     * @return true if it does, false otherwise.
+     */
+    private static boolean summarized(GeneralTreeNode<FileSystem> dir) {
+        return dir.depth < MAX_DEPTH && dir.depth % STRIDE == 0;
+    }
+
+    /**
+     * Counts a name in a summary, starting a filter twice the size of the last one when that one is full.
+     *
+     * @param summary the summary.
+     * @param name    the case folded name.
+     */
+    private static void add(Summary summary, String name) {
+        if (summary.used == summary.capacity) {
+            summary.capacity *= 2;
+            summary.filters.add(new CountingBloomFilter(summary.capacity));
+            summary.used = 0;
+        }
+        summary.filters.get(summary.filters.size() - 1).add(name);
+        summary.used++;
+        summary.count++;
+    }
+
+    /**
+     * Replaces the filters of a directory with a single one sized for the names left below it.
+     * Called once the stale names outnumber the rest, so the work is paid for by the removals.
+     *
+     * @param dir     the directory.
+     * @param summary the summary of the directory.
+     * @param removed the item being removed, still in the tree but no longer counted.
+     */
+    private static void rebuild(GeneralTreeNode<FileSystem> dir, Summary summary, TreeNode<FileSystem> removed) {
+        summary.capacity = Math.max(INITIAL_CAPACITY, Integer.highestOneBit(summary.count) << 1);
+        summary.filters.clear();
+        summary.filters.add(new CountingBloomFilter(summary.capacity));
+        summary.used = summary.count = summary.stale = 0;
+        fill(summary, dir, removed);
+    }
+
+    /**
+     * Counts the names of every item below a directory in a summary.
+     *
+     * @param summary the summary.
+     * @param dir     the directory.
+     * @param removed an item to leave out.
+     */
+    private static void fill(Summary summary, GeneralTreeNode<FileSystem> dir, TreeNode<FileSystem> removed) {
+        for (var child : dir.children) {
+            if (child != removed) add(summary, NameOrder.fold(child.data.getName()));
+            fill(summary, (GeneralTreeNode<FileSystem>) child, removed);
+        }
+    }
+}
@@ -1,6 +1,9 @@
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.InputMismatchException;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 import static utils.PrintUtils.*;
 
@@ -11,6 +14,23 @@ import static utils.PrintUtils.*;
  */
 public class CommandMode {
 
+    // Number of edits accepted by find --fuzzy when no distance is given
+    private static final int DEFAULT_FUZZY_DISTANCE = 2;
+
+    /**
+     * Reads the arguments of a command and records the command in batch mode syntax before it runs, so failed
+     * commands are part of the trace too
+     *
+     * @param in      the scanner object
+     * @param command the batch mode name of the command
+     * @return the arguments
+     */
+    private static String readArgs(Scanner in, String command) {
+        var args = in.nextLine();
+        TraceRecorder.record(args.isBlank() ? command : command + " " + args);
+        return args;
+    }
+
     /**
      * Create file helper method for command mode
      *
@@ -20,24 +40,32 @@ public class CommandMode {
     public static void createFile(Scanner in, DirectoryTree tree) {
         println("Usage: <file_path> <size>");
         print("(create_file)> ");
-        String nameSize = in.nextLine();
+        createFile(readArgs(in, "touch"), tree);
+    }
+
+    /**
+     * Creates a file from a path and a size given on one line, shared by command and batch mode
+     *
+     * @param nameSize the path and size of the file
+     * @param tree     the directory tree
+     */
+    public static void createFile(String nameSize, DirectoryTree tree) {
         var parts = nameSize.split(" ");
         if (parts.length != 2) {
             throw new InputMismatchException("Invalid number of arguments");
         }
-        var fileParts = parts[0].split("/");
-        var file = fileParts[fileParts.length - 1];
-        fileParts[fileParts.length - 1] = "";
-        var oldWd = tree.cd(String.join("/", fileParts));
+        var path = parts[0];
+        var file = path.substring(DirectoryTree.nameStart(path), DirectoryTree.nameEnd(path));
         var fileExt = file.split("\\.");
 
         if (fileExt.length != 2) {
             throw new InputMismatchException("Invalid file name please include the extension");
         }
 
-        var res = tree.create(new File(fileExt[0], fileExt[1], Long.parseLong(parts[1])));
+        // Resolve the parent directory in place instead of splitting and rejoining the path
+        var parent = tree.getParentByPath(path);
+        var res = tree.create(parent, new File(fileExt[0], fileExt[1], Long.parseLong(parts[1])));
         printf("Created file %s\n", res.data);
-        tree.cd(oldWd);
     }
 
     /**
@@ -49,17 +77,22 @@ public class CommandMode {
     public static void createDirectory(Scanner in, DirectoryTree tree) {
         println("Usage: <dir_path>");
         print("(create_directory)> ");
-        String name = in.nextLine();
+        createDirectory(readArgs(in, "mkdir"), tree);
+    }
+
+    /**
+     * Creates a directory from a path given on one line, shared by command and batch mode
+     *
+     * @param name the path of the directory
+     * @param tree the directory tree
+     */
+    public static void createDirectory(String name, DirectoryTree tree) {
         if (name.isBlank()) {
             throw new InputMismatchException("Invalid path");
         }
-        var parts = name.split("/");
-        var dirName = parts[parts.length - 1];
-        parts[parts.length - 1] = "";
-        var oldWd = tree.cd(String.join("/", parts));
-        var dir = tree.create(new Directory(dirName));
+        var dirName = name.substring(DirectoryTree.nameStart(name), DirectoryTree.nameEnd(name));
+        var dir = tree.create(tree.getParentByPath(name), new Directory(dirName));
         printf("Created directory %s\n", dir.data);
-        tree.cd(oldWd);
     }
 
     /**
@@ -71,7 +104,16 @@ public class CommandMode {
     public static void delete(Scanner in, DirectoryTree tree) {
         println("Usage: <path>");
         print("(delete)> ");
-        String path = in.nextLine();
+        delete(readArgs(in, "rm"), tree);
+    }
+
+    /**
+     * Deletes the item at a path, shared by command and batch mode
+     *
+     * @param path the path of the item
+     * @param tree the directory tree
+     */
+    public static void delete(String path, DirectoryTree tree) {
         if (path.isBlank()) {
             throw new InputMismatchException("Invalid path");
         }
@@ -91,7 +133,16 @@ public class CommandMode {
     public static void cd(Scanner in, DirectoryTree tree) {
         println("Usage: <path>");
         print("(cd)> ");
-        String path = in.nextLine();
+        cd(readArgs(in, "cd"), tree);
+    }
+
+    /**
+     * Changes to the directory at a path, shared by command and batch mode
+     *
+     * @param path the path of the directory
+     * @param tree the directory tree
+     */
+    public static void cd(String path, DirectoryTree tree) {
         if (path.isBlank()) {
             throw new InputMismatchException("Invalid path");
         }
@@ -116,7 +167,16 @@ public class CommandMode {
     public static void rename(Scanner in, DirectoryTree tree) {
         println("Usage: <path> <new_name>");
         print("(rename)> ");
-        String pathName = in.nextLine();
+        rename(readArgs(in, "rename"), tree);
+    }
+
+    /**
+     * Renames an item from a path and a new name given on one line, shared by command and batch mode
+     *
+     * @param pathName the path and new name of the item
+     * @param tree     the directory tree
+     */
+    public static void rename(String pathName, DirectoryTree tree) {
         var parts = pathName.split(" ");
         if (parts.length != 2) {
             throw new InputMismatchException("Invalid number of arguments");
@@ -136,13 +196,20 @@ public class CommandMode {
      */
     public static void sort(Scanner in, DirectoryTree tree) {
         println("Usage: <option>");
+        println("       <key>[:asc|:desc],... e.g. ext,size:desc,name");
         String[] opts = {"name", "size", "date_created", "date_modified"};
         println("Options: ");
         for (var opt : opts) println(opt);
         print("(sort)> ");
-        String choice = in.nextLine().toLowerCase();
+        String choice = in.nextLine().toLowerCase().strip();
+        if (choice.contains(",") || choice.contains(":") || choice.equals("ext")) {
+            TraceRecorder.record("sort " + choice);
+            tree.sortBy(choice); // Several keys or explicit directions, no need to ask for the order
+            return;
+        }
 
         if (choice.isBlank() || !Arrays.asList(opts).contains(choice)) {
+            TraceRecorder.record("sort " + choice);
             throw new InputMismatchException("Invalid option");
         }
 
@@ -153,6 +220,7 @@ public class CommandMode {
         }
 
         boolean ascending = order.startsWith("y");
+        TraceRecorder.record("sort " + (ascending ? choice : choice + ":desc")); // As one batch mode specification
         switch (choice) {
             case "name" -> tree.sortByName(ascending);
             case "size" -> tree.sortBySize(ascending);
@@ -162,6 +230,39 @@ public class CommandMode {
         }
     }
 
+    /**
+     * Collation helper method for command mode, sets how names are compared by search, sort and the structure
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void collation(Scanner in, DirectoryTree tree) {
+        println("Usage: <option>");
+        println("Options: ");
+        println("binary - Compare names character by character, upper case first");
+        println("ignore_case - Compare names ignoring case");
+        println("locale - Compare names by the rules of the current locale");
+        print("(collation)> ");
+        collation(readArgs(in, "collation"), tree);
+    }
+
+    /**
+     * Sets the collation named by an option, shared by command and batch mode
+     *
+     * @param option the collation option
+     * @param tree   the directory tree
+     */
+    public static void collation(String option, DirectoryTree tree) {
+        String choice = option.toLowerCase().strip();
+        var order = switch (choice) {
+            case "binary" -> NameOrder.BINARY;
+            case "ignore_case" -> NameOrder.IGNORE_CASE;
+            case "locale" -> NameOrder.LOCALE;
+            default -> throw new InputMismatchException("Invalid collation choice");
+        };
+        tree.setNameOrder(order);
+    }
+
     /**
      * Stat item helper method for command mode
      *
@@ -171,7 +272,16 @@ public class CommandMode {
     public static void stat(Scanner in, DirectoryTree tree) {
         println("Usage: <path>");
         print("(stat)> ");
-        String path = in.nextLine();
+        stat(readArgs(in, "stat"), tree);
+    }
+
+    /**
+     * Shows the stats of the item at a path, shared by command and batch mode
+     *
+     * @param path the path of the item
+     * @param tree the directory tree
+     */
+    public static void stat(String path, DirectoryTree tree) {
         if (path.isBlank()) {
             throw new InputMismatchException("Invalid path");
         }
@@ -192,6 +302,96 @@ public class CommandMode {
         }
     }
 
+    /**
+     * Statistics helper method for command mode, shows the number and size of files per extension under a directory
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void stats(Scanner in, DirectoryTree tree) {
+        println("Usage: ext [path]");
+        print("(stats)> ");
+        stats(readArgs(in, "stats"), tree);
+    }
+
+    /**
+     * Shows the statistics requested by arguments given on one line, shared by command and batch mode
+     *
+     * @param args the arguments
+     * @param tree the directory tree
+     */
+    public static void stats(String args, DirectoryTree tree) {
+        var parts = args.strip().split(" +");
+        if (!parts[0].equals("ext") || parts.length > 2) {
+            throw new InputMismatchException("Invalid option");
+        }
+
+        var dir = tree.getNodeByPath(parts.length == 2 ? parts[1] : ".");
+        if (!dir.data.isDirectory()) {
+            throw new InputMismatchException("Cannot show statistics for a file");
+        }
+        var stats = new ArrayList<>(tree.getExtensionStats(dir).entrySet());
+        if (stats.isEmpty()) {
+            println("No files");
+            return;
+        }
+        // Largest total size first
+        stats.sort((a, b) -> Long.compare(b.getValue().getBytes(), a.getValue().getBytes()));
+        printf("%-12s %8s %10s\n", "Extension", "Files", "Size");
+        for (var entry : stats) {
+            printf("%-12s %8d %10s\n", "." + entry.getKey(), entry.getValue().getCount(),
+                    Common.formatSize(entry.getValue().getBytes()));
+        }
+    }
+
+    /**
+     * Top items helper method for command mode, shows the largest or most recent items under a directory
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void top(Scanner in, DirectoryTree tree) {
+        println("Usage: <k> [size|mtime|ctime] [path]");
+        print("(top)> ");
+        top(readArgs(in, "top"), tree);
+    }
+
+    /**
+     * Shows the top items requested by arguments given on one line, shared by command and batch mode
+     *
+     * @param args the arguments
+     * @param tree the directory tree
+     */
+    public static void top(String args, DirectoryTree tree) {
+        var parts = args.strip().split(" +");
+        if (parts[0].isBlank() || parts.length > 3) {
+            throw new InputMismatchException("Invalid number of arguments");
+        }
+
+        int k = Integer.parseInt(parts[0]);
+        var key = parts.length > 1 ? parts[1].toLowerCase() : "size";
+        var order = switch (key) {
+            case "size" -> DirectoryTree.BY_SIZE;
+            case "mtime" -> DirectoryTree.BY_MODIFIED;
+            case "ctime" -> DirectoryTree.BY_CREATED;
+            default -> throw new InputMismatchException("Invalid key: " + key);
+        };
+        var dir = tree.getNodeByPath(parts.length > 2 ? parts[2] : ".");
+        if (!dir.data.isDirectory()) {
+            throw new InputMismatchException("Cannot search in a file");
+        }
+
+        for (var node : tree.top(dir, k, order)) {
+            var data = node.data;
+            var value = switch (key) {
+                case "size" -> Common.formatSize(data.getSize());
+                case "mtime" -> data.getDateModified().toString();
+                default -> data.getDateCreated().toString();
+            };
+            printf("%-30s %s\n", value, tree.getPath(node));
+        }
+    }
+
     /**
      * Move item helper method for command mode
      *
@@ -201,7 +401,16 @@ public class CommandMode {
     public static void move(Scanner in, DirectoryTree tree) {
         println("Usage: <source> <destination>");
         print("(move)> ");
-        String sourceDest = in.nextLine();
+        move(readArgs(in, "mv"), tree);
+    }
+
+    /**
+     * Moves an item from a source and destination given on one line, shared by command and batch mode
+     *
+     * @param sourceDest the source and destination paths
+     * @param tree       the directory tree
+     */
+    public static void move(String sourceDest, DirectoryTree tree) {
         if (sourceDest.isBlank()) {
             throw new InputMismatchException("Invalid source and destination");
         }
@@ -212,10 +421,184 @@ public class CommandMode {
         }
 
         var source = tree.getNodeByPath(parts[0]);
-        var oldWd = tree.cd(parts[1]);
-        tree.move(source);
-        printf("Moved %s to %s\n", source.data, tree.getWd().data);
-        tree.cd(oldWd);
+        var dest = tree.getDirectoryByPath(parts[1]);
+        tree.move(source, dest);
+        printf("Moved %s to %s\n", source.data, dest.data);
+    }
+
+    /**
+     * Search helper method for command mode
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void search(Scanner in, DirectoryTree tree) {
+        print("Enter the name of the item you want to search for > ");
+        Common.search(readArgs(in, "search"), tree);
+    }
+
+    /**
+     * Find items by glob pattern helper method for command mode
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void find(Scanner in, DirectoryTree tree) {
+        println("Usage: <root> <glob> e.g. src **/*.java");
+        println("       --prefix <prefix>");
+        println("       --fuzzy <name> [maxDistance]");
+        println("       --contains <text>");
+        println("       [<root>] where <query> [-limit N] [-parallel] e.g. src where ext java and size >1K -limit 10");
+        println("         conditions: name GLOB, ext EXT, size [<>]N, mtime/ctime <AGE|>AGE, type f|d, depth [<>]N");
+        println("         combined with and, or, not and parentheses");
+        println("       Options starting with -- search the whole tree, add --in <path> to search under a directory");
+        println("       [--size >N|<N|N] [--mtime <AGE|>AGE] [--ctime <AGE|>AGE] e.g. --size >1G --mtime <1h");
+        print("(find)> ");
+        find(readArgs(in, "find"), tree);
+    }
+
+    /**
+     * Finds the items matching arguments given on one line, shared by command and batch mode
+     *
+     * @param args the arguments
+     * @param tree the directory tree
+     */
+    public static void find(String args, DirectoryTree tree) {
+        var parts = args.strip().split(" +");
+        if (parts[0].isBlank()) {
+            throw new InputMismatchException("Invalid number of arguments");
+        }
+
+        var found = new AtomicInteger();
+        Consumer<String> sink = path -> {
+            found.incrementAndGet();
+            println(path);
+        };
+        int where = Arrays.asList(parts).indexOf("where");
+        if (where == 0 || where == 1) {
+            var root = tree.getNodeByPath(where == 1 ? parts[0] : ".");
+            if (!root.data.isDirectory()) {
+                throw new InputMismatchException("Cannot search in a file");
+            }
+            int limit = Integer.MAX_VALUE;
+            boolean parallel = false;
+            var expression = new StringBuilder();
+            for (int i = where + 1; i < parts.length; i++) {
+                switch (parts[i]) {
+                    case "-limit" -> {
+                        if (++i == parts.length) throw new InputMismatchException("Missing limit");
+                        limit = Integer.parseInt(parts[i]);
+                    }
+                    case "-parallel" -> parallel = true;
+                    default -> expression.append(parts[i]).append(' ');
+                }
+            }
+            tree.findWhere(root, new FindQuery(expression.toString()), limit, parallel, sink);
+        } else if (parts[0].startsWith("--")) {
+            // Index backed searches cover the whole tree unless restricted to a directory with --in <path>
+            var dir = tree.getRoot();
+            int scope = Arrays.asList(parts).indexOf("--in");
+            if (scope >= 0) {
+                if (scope + 1 == parts.length) throw new InputMismatchException("Missing directory");
+                dir = tree.getNodeByPath(parts[scope + 1]);
+                if (!dir.data.isDirectory()) {
+                    throw new InputMismatchException("Cannot search in a file");
+                }
+                var rest = new ArrayList<>(Arrays.asList(parts));
+                rest.subList(scope, scope + 2).clear();
+                parts = rest.toArray(new String[0]);
+            }
+
+            if (parts[0].equals("--prefix")) {
+                if (parts.length != 2) throw new InputMismatchException("Missing prefix");
+                tree.findByPrefix(dir, parts[1], sink);
+            } else if (parts[0].equals("--contains")) {
+                if (parts.length != 2) throw new InputMismatchException("Missing text");
+                tree.findContaining(dir, parts[1], sink);
+            } else if (parts[0].equals("--fuzzy")) {
+                if (parts.length < 2 || parts.length > 3) {
+                    throw new InputMismatchException("Invalid number of arguments");
+                }
+                int maxDistance = parts.length == 3 ? Integer.parseInt(parts[2]) : DEFAULT_FUZZY_DISTANCE;
+                if (maxDistance < 0) throw new InputMismatchException("Invalid distance: " + maxDistance);
+                tree.findFuzzy(dir, parts[1], maxDistance, (path, distance) -> {
+                    found.incrementAndGet();
+                    printf("%d  %s\n", distance, path);
+                });
+            } else {
+                if (parts.length % 2 != 0) throw new InputMismatchException("Invalid number of arguments");
+                var filters = new ArrayList<MetadataFilter>();
+                for (int i = 0; i < parts.length; i += 2) {
+                    filters.add(MetadataFilter.parse(parts[i], parts[i + 1]));
+                }
+                tree.findByMetadata(dir, filters, sink);
+            }
+        } else {
+            if (parts.length > 2) throw new InputMismatchException("Invalid number of arguments");
+            var root = tree.getNodeByPath(parts.length == 2 ? parts[0] : ".");
+            if (!root.data.isDirectory()) {
+                throw new InputMismatchException("Cannot search in a file");
+            }
+            tree.find(root, new Glob(parts[parts.length - 1]), sink);
+        }
+        if (found.get() == 0) println("No items found");
+    }
+
+    /**
+     * Relative path helper method for command mode, prints the path leading from one item to another
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void relpath(Scanner in, DirectoryTree tree) {
+        println("Usage: <from> <to>");
+        print("(relpath)> ");
+        relpath(readArgs(in, "relpath"), tree);
+    }
+
+    /**
+     * Prints the path leading from one item to another, both given on one line, shared by command and batch mode
+     *
+     * @param args the two paths
+     * @param tree the directory tree
+     */
+    public static void relpath(String args, DirectoryTree tree) {
+        var parts = args.strip().split(" +");
+        if (parts.length != 2) {
+            throw new InputMismatchException("Invalid number of arguments");
+        }
+        var from = tree.getNodeByPath(parts[0]);
+        var to = tree.getNodeByPath(parts[1]);
+        println(tree.relativePath(from, to));
+    }
+
+    /**
+     * Complete name helper method for command mode, lists the items in the working directory starting with a prefix
+     *
+     * @param in   the scanner object
+     * @param tree the directory tree
+     */
+    public static void complete(Scanner in, DirectoryTree tree) {
+        println("Usage: <prefix>");
+        print("(complete)> ");
+        complete(readArgs(in, "complete"), tree);
+    }
+
+    /**
+     * Lists the items in the working directory starting with a prefix, shared by command and batch mode
+     *
+     * @param args the prefix
+     * @param tree the directory tree
+     */
+    public static void complete(String args, DirectoryTree tree) {
+        String prefix = args.strip();
+        var matches = tree.complete(prefix);
+        if (matches.isEmpty()) {
+            println("No matches");
+        }
+        for (var match : matches) {
+            println(match.data);
+        }
     }
 
     /**
@@ -231,32 +614,62 @@ public class CommandMode {
                       delete / rm - Delete the file or directory at the given path
                       move / mv - Move the file or directory from the source to the destination
                       stat - View the stats of the file or directory at the given path
+                      stats - View the number and size of files per extension under the given path
+                      top - Show the largest or most recently changed items under the given path
                       rename - Rename the file or directory at the given path
                       cd - Change directory to the given path
                       pwd - Print the current working directory
-                      search / find - Search file or directory with the given name
+                      relpath - Print the path leading from one item to another
+                      search - Search file or directory with the given name
+                      find - Find the files and directories under a path matching a glob pattern, or with a name
+                             starting with a prefix anywhere in the tree (--prefix), or with a name close to a
+                             possibly mistyped one (--fuzzy), or with a name containing some text (--contains), or
+                             by size and date ranges (--size, --mtime, --ctime), or by a query (where)
+                      complete - List the items in the current directory starting with the given prefix
                       sort - Sort the files and directories by the given option
+                      collation - Set whether names are compared exactly, ignoring case or by locale
                       show_structure / ls - Show the directory structure
+                      metrics - Show the count, rate and latency of every operation so far
                       help - Show this help message
                       exit - Exit the program""";
         println(help);
         boolean running = true;
         while (running) {
+            var command = "";
+            long started = 0;
             try {
                 print("> ");
-                var command = in.nextLine().toLowerCase().strip();
+                flush(); // Command boundary, write out everything before waiting for input
+                command = in.nextLine().toLowerCase().strip();
+                started = System.nanoTime();
                 switch (command) {
                     case "create_file", "touch" -> createFile(in, tree);
                     case "create_directory", "mkdir" -> createDirectory(in, tree);
                     case "delete", "rm" -> delete(in, tree);
                     case "move", "mv" -> move(in, tree);
-                    case "search", "find" -> Common.search(in, tree);
+                    case "search" -> search(in, tree);
+                    case "find" -> find(in, tree);
+                    case "complete" -> complete(in, tree);
                     case "sort" -> sort(in, tree);
+                    case "collation" -> collation(in, tree);
                     case "stat" -> stat(in, tree);
+                    case "stats" -> stats(in, tree);
+                    case "top" -> top(in, tree);
                     case "rename" -> rename(in, tree);
                     case "cd" -> cd(in, tree);
-                    case "pwd" -> Common.printWd(tree);
-                    case "show_structure", "ls" -> println(tree);
+                    case "pwd" -> {
+                        TraceRecorder.record(command);
+                        Common.printWd(tree);
+                    }
+                    case "relpath" -> relpath(in, tree);
+                    case "show_structure", "ls" -> {
+                        TraceRecorder.record(command);
+                        println(tree);
+                    }
+                    case "metrics" -> {
+                        TraceRecorder.record(command);
+                        print(Metrics.report());
+                    }
                     case "help", "h" -> println(help);
                     case "exit" -> {
                         println("Exiting...");
@@ -273,6 +686,9 @@ public class CommandMode {
             } catch (NumberFormatException e) {
                 println("Invalid number: " + e.getMessage());
 //                in.nextLine(); // Clear the buffer in case of invalid input
+            } finally {
+                // Failed commands are timed too, they are part of the load
+                if (BatchMode.isCommand(command)) Metrics.recordCommand("command." + command, started);
             }
         }
     }
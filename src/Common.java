@@ -11,7 +11,7 @@ public class Common {
      * @param directoryTree the directory tree
      */
     public static void printWd(DirectoryTree directoryTree) {
-        println(directoryTree.getWd().data);
+        println(directoryTree.getPath(directoryTree.getWd()));
     }
 
     /**
@@ -32,7 +32,18 @@ public class Common {
      */
     public static void search(Scanner in, DirectoryTree tree) {
         print("Enter the name of the item you want to search for > ");
-        String searchTerm = in.nextLine();
+        var searchTerm = in.nextLine();
+        TraceRecorder.record("search " + searchTerm);
+        search(searchTerm, tree);
+    }
+
+    /**
+     * Search item helper method taking the name directly
+     *
+     * @param searchTerm the name of the item
+     * @param tree       the directory tree
+     */
+    public static void search(String searchTerm, DirectoryTree tree) {
         if (searchTerm.isBlank()) {
             throw new InputMismatchException("Invalid search term");
         }
@@ -0,0 +1,103 @@
+/**
+ * Represents a counting Bloom filter over strings.
+ * Every string sets a few 4-bit counters chosen by hashing, so membership tests may report strings that were never
+ * added but never miss one that was. Keeping counts instead of bits allows strings to be removed again; a counter
+ * that reaches its maximum stays there, as its true count is no longer known.
+ */
+public class CountingBloomFilter {
+
+    // Number of counters set by every string
+    private static final int HASHES = 4;
+
+    // Number of counters per string added, giving roughly a 2% false positive rate at capacity
+    private static final int COUNTERS_PER_ITEM = 8;
+
+    // Largest value of a 4-bit counter
+    private static final int MAX_COUNT = 15;
+
+    // Counters packed 16 to a long
+    private final long[] counters;
+
+    // Mask reducing a hash to a counter index, the number of counters is a power of two
+    private final int mask;
+
+    /**
+     * Constructs an empty filter sized for the given number of strings.
+     *
+     * @param capacity the expected number of strings.
+     */
+    public CountingBloomFilter(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity * COUNTERS_PER_ITEM - 1, 15)) << 1;
+        counters = new long[size / 16];
+        mask = size - 1;
+    }
+
+    /**
+     * Adds a string to the filter.
+     *
+     * @param s the string.
+     */
+    public void add(String s) {
+        int h1 = mix(s.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int index = (h1 + i * h2) & mask;
+            int count = get(index);
+            if (count < MAX_COUNT) set(index, count + 1);
+        }
+    }
+
+    /**
+     * Removes a string previously added to the filter.
+     *
+     * @param s the string.
+     */
+    public void remove(String s) {
+        int h1 = mix(s.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            int index = (h1 + i * h2) & mask;
+            int count = get(index);
+            if (count > 0 && count < MAX_COUNT) set(index, count - 1);
+        }
+    }
+
+    /**
+     * Checks if a string may have been added to the filter.
+     *
+     * @param s the string.
+     * @return false if the string is definitely not in the filter, true if it may be.
+     */
+    public boolean mightContain(String s) {
+        int h1 = mix(s.hashCode());
+        int h2 = mix(h1) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            if (get((h1 + i * h2) & mask) == 0) return false;
+        }
+        return true;
+    }
+
+    private int get(int index) {
+        return (int) (counters[index >>> 4] >>> ((index & 15) << 2)) & 15;
+    }
+
+    private void set(int index, int count) {
+        int shift = (index & 15) << 2;
+        counters[index >>> 4] = (counters[index >>> 4] & ~(15L << shift)) | ((long) count << shift);
+    }
+
+    /**
+     * Spreads the bits of a hash code so nearby strings use unrelated counters.
+     *
+     * @param h the hash code.
+     * @return the mixed hash.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
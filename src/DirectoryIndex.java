@@ -0,0 +1,22 @@
+/**
+ * Interface for an index over the items of a directory tree.
+ * The directory tree keeps every registered index current: an item is removed from the indexes before it is
+ * detached, renamed or moved, and added back once it is attached again, so implementations may rely on the node's
+ * place in the tree during both calls.
+ */
+public interface DirectoryIndex {
+
+    /**
+     * Adds an item to the index.
+     *
+     * @param node the node holding the item.
+     */
+    void add(GeneralTreeNode<FileSystem> node);
+
+    /**
+     * Removes an item from the index.
+     *
+     * @param node the node holding the item.
+     */
+    void remove(GeneralTreeNode<FileSystem> node);
+}
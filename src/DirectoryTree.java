@@ -1,6 +1,12 @@
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
  * Represents a directory tree structure for managing files and directories in a file system.
@@ -8,14 +14,53 @@ import java.util.stream.Collectors;
  */
 public class DirectoryTree {
 
+    // Directories with at least this many children are searched in parallel
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    // Latency of the core operations, shared by every tree, see Metrics
+    private static final LatencyHistogram CREATE_TIME = Metrics.histogram("tree.create");
+    private static final LatencyHistogram REMOVE_TIME = Metrics.histogram("tree.remove");
+    private static final LatencyHistogram RENAME_TIME = Metrics.histogram("tree.rename");
+    private static final LatencyHistogram MOVE_TIME = Metrics.histogram("tree.move");
+    private static final LatencyHistogram CUT_TIME = Metrics.histogram("tree.cut");
+    private static final LatencyHistogram PASTE_TIME = Metrics.histogram("tree.paste");
+    private static final LatencyHistogram SEARCH_TIME = Metrics.histogram("tree.search");
+    private static final LatencyHistogram FIND_TIME = Metrics.histogram("tree.find");
+    private static final LatencyHistogram FIND_WHERE_TIME = Metrics.histogram("tree.find_where");
+    private static final LatencyHistogram TOP_TIME = Metrics.histogram("tree.top");
+    private static final LatencyHistogram LOOKUP_TIME = Metrics.histogram("tree.lookup");
+
+    // Orderings of tree nodes by each sortable attribute, in ascending order
+    static final Comparator<TreeNode<FileSystem>> BY_SIZE = Comparator.comparingLong(n -> n.data.getSize());
+    static final Comparator<TreeNode<FileSystem>> BY_MODIFIED = Comparator.comparing(n -> n.data.getDateModified());
+    static final Comparator<TreeNode<FileSystem>> BY_CREATED = Comparator.comparing(n -> n.data.getDateCreated());
+
     // The tree structure representing the file system
-    private final LinkedGeneralTree<FileSystem> directoryTree = new LinkedGeneralTree<>();
+    private final LinkedGeneralTree<FileSystem> directoryTree = new LinkedGeneralTree<>(fs -> !fs.isDirectory());
     private final GeneralTreeNode<FileSystem> root; // Root of the directory tree
     private GeneralTreeNode<FileSystem> wd; // Current working directory
-    private Comparator<? super TreeNode<FileSystem>> sorter = Comparator.comparing(o -> o.data.getName()); // Default
+    private NameOrder nameOrder = NameOrder.BINARY; // Order of names for searching, sorting and display
+    // Ordering of tree nodes by name in the current name order
+    private final Comparator<TreeNode<FileSystem>> byName = (a, b) -> nameOrder.compare(a.data, b.data);
+    private Comparator<? super TreeNode<FileSystem>> sorter = byName; // Default
     // sorter by name
-    private final Set<GeneralTreeNode<FileSystem>> clipboard = new HashSet<>(); // Clipboard for cut-and-paste
-    // operations
+    private final Set<Long> clipboard = new LinkedHashSet<>(); // Clipboard for cut-and-paste operations, holding
+    // handles to the cut items in the order they were cut
+    private final NameIndex nameIndex = new NameIndex(); // Index of every item by name for prefix queries
+    // Ordered indexes for range queries on sizes and dates
+    private final MetadataIndex sizeIndex = new MetadataIndex(FileSystem::getSize);
+    private final MetadataIndex createdIndex = new MetadataIndex(FileSystem::getCreatedNanos);
+    private final MetadataIndex modifiedIndex = new MetadataIndex(FileSystem::getModifiedNanos);
+    private final ExtensionIndex extensionIndex = new ExtensionIndex(); // Index of files by extension
+    private final BloomIndex bloomIndex = new BloomIndex(); // Summaries of the names below every directory
+    private final FuzzyIndex fuzzyIndex = new FuzzyIndex(); // Index of every item by name for approximate matches
+    private final TrigramIndex trigramIndex = new TrigramIndex(); // Index of every item by fragments of its name
+    // Full paths of the directories whose path was asked for, replaced as a whole whenever existing paths change
+    private volatile Map<GeneralTreeNode<FileSystem>, String> paths = new ConcurrentHashMap<>();
+    // Guards the shape of the tree so items on unrelated paths can be created, removed, moved and renamed concurrently
+    private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+    private final List<DirectoryIndex> indexes = new ArrayList<>(List.of(nameIndex, sizeIndex, createdIndex,
+            modifiedIndex, extensionIndex, bloomIndex, fuzzyIndex, trigramIndex)); // Indexes kept current by every change to the tree
 
     /**
      * Constructor with a specified root.
@@ -33,17 +78,56 @@ public class DirectoryTree {
      * @param ascending true for ascending order, false for descending order.
      */
     public void sortByName(boolean ascending) {
-        sorter = Comparator.comparing(n -> n.data.getName());
+        sorter = byName;
         if (!ascending) sorter = sorter.reversed(); // Reverse order if not ascending
     }
 
+    /**
+     * Sets the sorter for tree nodes from a specification of one or more keys, e.g. "ext,size:desc,name".
+     *
+     * @param spec the sort specification, see {@link SortSpec#compile(String, Comparator)}.
+     */
+    public void sortBy(String spec) {
+        sorter = SortSpec.compile(spec, byName);
+    }
+
+    /**
+     * Lists the items in a directory in the order of the current sorter.
+     *
+     * @param dir the directory.
+     * @return the sorted items.
+     */
+    public List<TreeNode<FileSystem>> list(GeneralTreeNode<FileSystem> dir) {
+        var items = new ArrayList<>(dir.children);
+        items.sort(sorter);
+        return items;
+    }
+
+    /**
+     * Sets how names are compared when searching for items and when sorting and displaying them by name.
+     *
+     * @param order the name order.
+     */
+    public void setNameOrder(NameOrder order) {
+        nameOrder = order;
+    }
+
+    /**
+     * Getter for the order names are compared in.
+     *
+     * @return the name order.
+     */
+    public NameOrder getNameOrder() {
+        return nameOrder;
+    }
+
     /**
      * Sets the sorter for tree nodes by size.
      *
      * @param ascending true for ascending order, false for descending order.
      */
     public void sortBySize(boolean ascending) {
-        sorter = Comparator.comparing(n -> n.data.getSize());
+        sorter = BY_SIZE;
         if (!ascending) sorter = sorter.reversed(); // Reverse order if not ascending
     }
 
@@ -53,7 +137,7 @@ public class DirectoryTree {
      * @param ascending true for ascending order, false for descending order.
      */
     public void sortByModifiedDate(boolean ascending) {
-        sorter = Comparator.comparing(n -> n.data.getDateModified());
+        sorter = BY_MODIFIED;
         if (!ascending) sorter = sorter.reversed(); // Reverse order if not ascending
     }
 
@@ -63,7 +147,7 @@ public class DirectoryTree {
      * @param ascending true for ascending order, false for descending order.
      */
     public void sortByCreatedDate(boolean ascending) {
-        sorter = Comparator.comparing(n -> n.data.getDateCreated());
+        sorter = BY_CREATED;
         if (!ascending) sorter = sorter.reversed(); // Reverse order if not ascending
     }
 
@@ -100,7 +184,18 @@ public class DirectoryTree {
      * @return true if the file/directory exists, false otherwise.
      */
     private boolean existsInCurrentDirectory(String name) {
-        return this.wd.children.stream().anyMatch(node -> node.data.getName().equals(name)); // Check if name exists
+        return existsIn(this.wd, name);
+    }
+
+    /**
+     * Checks if a file/directory with the given name already exists in a directory.
+     *
+     * @param dir  the directory to check.
+     * @param name the name of the file or directory to check.
+     * @return true if the file/directory exists, false otherwise.
+     */
+    private boolean existsIn(GeneralTreeNode<FileSystem> dir, String name) {
+        return dir.children.stream().anyMatch(node -> node.data.getName().equals(name)); // Check if name exists
         // among children
     }
 
@@ -108,53 +203,417 @@ public class DirectoryTree {
      * Cuts the specified items (files or directories) and adds them to the clipboard.
      *
      * @param items the list of items to cut.
+     * @throws InputMismatchException if an item contains the current working directory.
      */
     public void cut(ArrayList<GeneralTreeNode<FileSystem>> items) {
-        clipboard.addAll(items); // Add items to clipboard
-        for (var item : items) {
-            ((GeneralTreeNode<FileSystem>) item.parent).children.remove(item); // Remove item from parent
-            item.parent = item; // Set parent of item to itself (detached state)
-        }
+        long start = System.nanoTime();
+        try {
+            structure.writeLock().lock();
+            try {
+                for (var item : items) {
+                    if (directoryTree.isAncestor(item, wd)) {
+                        throw new InputMismatchException(
+                                "Cannot cut a directory containing the current working directory");
+                    }
+                }
+                for (var item : items) {
+                    unindexSubtree(item); // Cut items are out of the tree until they are pasted
+                    clipboard.add(directoryTree.handle(item)); // Add item to clipboard
+                    directoryTree.detach(item); // Remove item from parent, leaving it its own parent (detached state)
+                }
+                invalidatePaths();
 
-        // Update the modified date of the current working directory
-        var folder = wd.data;
-        if (folder instanceof Directory) {
-            folder.setDateModified(LocalDateTime.now());
+                // Update the modified date of the current working directory
+                if (wd.data instanceof Directory) {
+                    setDateModified(wd, LocalDateTime.now());
+                }
+            } finally {
+                structure.writeLock().unlock();
+            }
+        } finally {
+            CUT_TIME.record(System.nanoTime() - start);
         }
     }
 
     /**
      * Pastes the items from the clipboard to the specified indices in the current working directory.
+     * All indices are checked before any item is pasted, so an invalid list leaves the tree and clipboard unchanged.
      *
      * @param indices the indices where the items should be pasted.
+     * @throws InputMismatchException if an index is out of range or given more than once.
      */
     public void paste(ArrayList<Integer> indices) {
-        int i = 0;
-        for (var index : indices) {
-            var item = clipboard.iterator().next(); // Get an item from the clipboard
-            if (index == i) {
-                clipboard.remove(item); // Remove item from clipboard after pasting
-                this.wd.children.add(item); // Add item to current working directory
+        long start = System.nanoTime();
+        try {
+            structure.writeLock().lock();
+            try {
+                var items = getClipboard();
+                var seen = new HashSet<Integer>();
+                for (var index : indices) {
+                    if (index < 0 || index >= items.size()) throw new InputMismatchException("Invalid item index");
+                    if (!seen.add(index)) throw new InputMismatchException("Item index given twice: " + index);
+                }
+                for (var index : indices) {
+                    var item = items.get(index); // Get an item from the clipboard
+                    clipboard.remove(directoryTree.handle(item)); // Remove item from clipboard after pasting
+                    directoryTree.attach(this.wd, item); // Add item to current working directory
+                    indexSubtree(item);
+                }
+                invalidatePaths();
+
+                // Update the modified date of the current working directory
+                if (wd.data instanceof Directory) {
+                    setDateModified(wd, LocalDateTime.now());
+                }
+            } finally {
+                structure.writeLock().unlock();
+            }
+        } finally {
+            PASTE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Searches the current working directory for the first item, in preorder, with a name equal to the specified one
+     * in the current name order.
+     * Directories whose name summary shows the name is not below them are skipped along with their contents.
+     *
+     * @param name the name of the item to search for.
+     * @return the full path of the item, or "Item not found".
+     */
+    public String search(String name) {
+        long start = System.nanoTime();
+        var event = new TreeEvents.Search();
+        event.begin();
+        try {
+            var key = nameOrder.key(name);
+            // Names equal in the locale's order may differ in more than case, so its searches cannot use the summaries
+            var folded = nameOrder == NameOrder.LOCALE ? null : NameOrder.fold(name);
+            var found = hasName(wd, key) ? wd : searchSubtree(wd, key, folded);
+            var result = found == null ? null : getPath(found);
+            event.end();
+            if (event.shouldCommit()) {
+                event.name = name;
+                event.result = result;
+                event.depth = found == null ? -1 : directoryTree.depth(found);
+                event.commit();
             }
-            i++;
+            return result == null ? "Item not found" : result;
+        } finally {
+            SEARCH_TIME.record(System.nanoTime() - start);
         }
+    }
 
-        // Update the modified date of the current working directory
-        var folder = wd.data;
-        if (folder instanceof Directory) {
-            folder.setDateModified(LocalDateTime.now());
+    /**
+     * Recursively searches below a directory for the first item, in preorder, with the specified name.
+     *
+     * @param dir    the directory to search.
+     * @param key    the key of the name in the current name order.
+     * @param folded the case folded name, or null to search without consulting the name summaries.
+     * @return the node of the item, or null if no item below the directory has the name.
+     */
+    private GeneralTreeNode<FileSystem> searchSubtree(GeneralTreeNode<FileSystem> dir, Object key, String folded) {
+        if (folded != null && !bloomIndex.mightContain(dir, folded)) return null; // Definitely not below here
+        for (var child : dir.children) {
+            var node = (GeneralTreeNode<FileSystem>) child;
+            if (hasName(node, key)) return node;
+            if (!node.isLeaf()) {
+                var found = searchSubtree(node, key, folded);
+                if (found != null) return found;
+            }
         }
+        return null;
     }
 
     /**
-     * Searches for a directory with the specified name using a binary search tree.
+     * Checks if the name of an item is equal to a name in the current name order.
      *
-     * @param name the name of the directory to search for.
-     * @return the search result as a string.
+     * @param node the node holding the item.
+     * @param key  the key of the name in the current name order.
+     * @return true if the names are equal, false otherwise.
      */
-    public String search(String name) {
-        BinarySearchTree<FileSystem> bst = new BinarySearchTree<>(wd);
-        return bst.searchResult(new Directory(name), wd); // Search for the directory
+    private boolean hasName(TreeNode<FileSystem> node, Object key) {
+        return nameOrder.compareKeys(node.data.getNameKey(nameOrder), key) == 0;
+    }
+
+    /**
+     * Finds every item under a directory whose path relative to it matches a glob pattern.
+     * Directories that cannot lead to a match are skipped along with their contents, and directories with many
+     * children are searched in parallel on the common ForkJoin pool, so matches may arrive out of order.
+     *
+     * @param dir     the directory to search from.
+     * @param pattern the compiled glob pattern.
+     * @param sink    receives the full path of each match as soon as it is found, must be thread safe.
+     */
+    public void find(GeneralTreeNode<FileSystem> dir, Glob pattern, Consumer<String> sink) {
+        long start = System.nanoTime();
+        try {
+            new FindTask(dir, getPath(dir), pattern.start(), pattern, sink).invoke();
+        } finally {
+            FIND_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Task matching the children of a directory against a glob pattern, recursing into directories still in play.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized
+    private static final class FindTask extends RecursiveAction {
+        private final GeneralTreeNode<FileSystem> dir; // Directory whose children are matched
+        private final String prefix; // Full path of the directory
+        private final long states; // Pattern states the children are matched against
+        private final Glob pattern;
+        private final Consumer<String> sink;
+
+        FindTask(GeneralTreeNode<FileSystem> dir, String prefix, long states, Glob pattern, Consumer<String> sink) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.states = states;
+            this.pattern = pattern;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            boolean wide = dir.children.size() >= PARALLEL_THRESHOLD;
+            List<FindTask> forks = wide ? new ArrayList<>() : null;
+            for (var child : dir.children) {
+                var data = child.data;
+                long step = pattern.step(states, data.getFullName());
+                String path = null;
+                if (Glob.matched(step)) {
+                    path = prefix + data;
+                    sink.accept(path);
+                }
+                long next = Glob.next(step);
+                if (next == 0 || !data.isDirectory()) continue; // Nothing below the child can match
+                var task = new FindTask((GeneralTreeNode<FileSystem>) child, path != null ? path : prefix + data,
+                        next, pattern, sink);
+                if (wide) forks.add(task);
+                else task.compute();
+            }
+            if (wide) invokeAll(forks);
+        }
+    }
+
+    /**
+     * Finds the items under a directory matching a query in a single traversal, stopping as soon as enough items
+     * have been found and never descending past the deepest depth the query can match at.
+     *
+     * @param dir      the directory to search from.
+     * @param query    the compiled query.
+     * @param limit    the largest number of items to report, or Integer.MAX_VALUE for all of them.
+     * @param parallel whether directories with many children are searched in parallel on the common ForkJoin
+     *                 pool, in which case matches may arrive out of order.
+     * @param sink     receives the full path of each match, must be thread safe when searching in parallel.
+     */
+    public void findWhere(GeneralTreeNode<FileSystem> dir, FindQuery query, int limit, boolean parallel,
+                          Consumer<String> sink) {
+        long start = System.nanoTime();
+        try {
+            if (limit <= 0) throw new InputMismatchException("Limit must be positive");
+            new QueryTask(dir, getPath(dir), 1, query, new AtomicInteger(limit), parallel, sink).invoke();
+        } finally {
+            FIND_WHERE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Task testing the children of a directory against a query, recursing into subdirectories.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized
+    private static final class QueryTask extends RecursiveAction {
+        private final GeneralTreeNode<FileSystem> dir; // Directory whose children are tested
+        private final String prefix; // Full path of the directory
+        private final int depth; // Depth of the children
+        private final FindQuery query;
+        private final AtomicInteger remaining; // Number of matches still wanted, shared by every task
+        private final boolean parallel;
+        private final Consumer<String> sink;
+
+        QueryTask(GeneralTreeNode<FileSystem> dir, String prefix, int depth, FindQuery query, AtomicInteger remaining,
+                  boolean parallel, Consumer<String> sink) {
+            this.dir = dir;
+            this.prefix = prefix;
+            this.depth = depth;
+            this.query = query;
+            this.remaining = remaining;
+            this.parallel = parallel;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            boolean wide = parallel && dir.children.size() >= PARALLEL_THRESHOLD;
+            boolean descend = depth < query.maxDepth();
+            List<QueryTask> forks = wide ? new ArrayList<>() : null;
+            for (var child : dir.children) {
+                if (remaining.get() <= 0) return; // Enough matches have been found
+                var data = child.data;
+                if (query.test(data, depth)) {
+                    if (remaining.getAndDecrement() <= 0) return;
+                    sink.accept(prefix + data);
+                }
+                if (!descend || !data.isDirectory()) continue;
+                var task = new QueryTask((GeneralTreeNode<FileSystem>) child, prefix + data, depth + 1, query,
+                        remaining, parallel, sink);
+                if (wide) forks.add(task);
+                else task.compute();
+            }
+            if (wide) invokeAll(forks);
+        }
+    }
+
+    /**
+     * Finds the k greatest items under a directory in a single traversal, keeping only the best k seen so far in a
+     * bounded heap. Directories with many children are searched in parallel on the common ForkJoin pool.
+     *
+     * @param dir   the directory to search.
+     * @param k     the number of items to return.
+     * @param order the ordering of items, e.g. {@link #BY_SIZE} for the largest items.
+     * @return up to k items, greatest first.
+     */
+    public List<GeneralTreeNode<FileSystem>> top(GeneralTreeNode<FileSystem> dir, int k,
+                                                 Comparator<TreeNode<FileSystem>> order) {
+        long start = System.nanoTime();
+        try {
+            if (k <= 0) throw new InputMismatchException("Number of items must be positive");
+            var heap = new TopTask(dir, k, order).invoke();
+            var result = new ArrayList<GeneralTreeNode<FileSystem>>(heap.size());
+            while (!heap.isEmpty()) result.add(heap.poll());
+            Collections.reverse(result); // The heap hands out the least item first
+            return result;
+        } finally {
+            TOP_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Task collecting the k greatest items under a directory into a min-heap.
+     */
+    @SuppressWarnings("serial") // Tasks are never serialized
+    private static final class TopTask extends RecursiveTask<PriorityQueue<GeneralTreeNode<FileSystem>>> {
+        private final GeneralTreeNode<FileSystem> dir; // Directory whose contents are collected
+        private final int k;
+        private final Comparator<TreeNode<FileSystem>> order;
+
+        TopTask(GeneralTreeNode<FileSystem> dir, int k, Comparator<TreeNode<FileSystem>> order) {
+            this.dir = dir;
+            this.k = k;
+            this.order = order;
+        }
+
+        @Override
+        protected PriorityQueue<GeneralTreeNode<FileSystem>> compute() {
+            var heap = new PriorityQueue<GeneralTreeNode<FileSystem>>(k + 1, order);
+            var forks = new ArrayList<TopTask>();
+            collect(dir, heap, forks);
+            invokeAll(forks);
+            for (var fork : forks) {
+                for (var node : fork.join()) offer(heap, node);
+            }
+            return heap;
+        }
+
+        /**
+         * Offers every item under a directory to the heap, handing the subdirectories of wide directories to forks.
+         *
+         * @param dir   the directory.
+         * @param heap  the heap of the best items so far.
+         * @param forks the tasks to run in parallel.
+         */
+        private void collect(GeneralTreeNode<FileSystem> dir, PriorityQueue<GeneralTreeNode<FileSystem>> heap,
+                             List<TopTask> forks) {
+            boolean wide = dir.children.size() >= PARALLEL_THRESHOLD;
+            for (var child : dir.children) {
+                var node = (GeneralTreeNode<FileSystem>) child;
+                offer(heap, node);
+                if (node.children.isEmpty()) continue;
+                if (wide) forks.add(new TopTask(node, k, order));
+                else collect(node, heap, forks);
+            }
+        }
+
+        /**
+         * Adds an item to the heap if it is among the best k seen so far.
+         *
+         * @param heap the heap of the best items so far.
+         * @param node the item.
+         */
+        private void offer(PriorityQueue<GeneralTreeNode<FileSystem>> heap, GeneralTreeNode<FileSystem> node) {
+            if (heap.size() < k) {
+                heap.add(node);
+            } else if (order.compare(node, heap.peek()) > 0) {
+                heap.poll(); // Evict the least of the best items
+                heap.add(node);
+            }
+        }
+    }
+
+    /**
+     * Returns the full path of a node, reusing the cached paths of the node and its ancestors.
+     * The paths of directories are cached in a table beside the tree when built and stay valid until a rename, cut,
+     * paste, move or removal of a directory changes existing paths, so repeated lookups take constant time and a
+     * lookup after a change only rebuilds the missing prefix. Files are not cached, their path is the cached path of
+     * their directory and their name.
+     *
+     * @param node the node whose path is built.
+     * @return the full path of the node.
+     */
+    public String getPath(GeneralTreeNode<FileSystem> node) {
+        var cache = paths; // Paths built now go into the table they were built against, even if it is replaced
+        var path = cache.get(node);
+        if (path != null) return path;
+
+        // Walk up to the nearest ancestor with a cached path, a cut node is its own parent so stop there
+        var missing = new ArrayList<GeneralTreeNode<FileSystem>>();
+        var n = node;
+        while (n != null && (path = cache.get(n)) == null) {
+            missing.add(n);
+            n = n.parent == n ? null : (GeneralTreeNode<FileSystem>) n.parent;
+        }
+        if (path == null) path = "";
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            var m = missing.get(i);
+            path = path + m.data;
+            if (!m.isLeaf()) cache.put(m, path);
+        }
+        return path;
+    }
+
+    /**
+     * Invalidates every cached path, to be called after a change to existing paths.
+     */
+    private void invalidatePaths() {
+        paths = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Builds the path leading from a directory to an item, going up with ".." to their lowest common ancestor and
+     * then down to the item.
+     *
+     * @param from the directory the path starts at.
+     * @param to   the item the path leads to.
+     * @return the relative path, or "." if both are the same directory.
+     * @throws InputMismatchException if the path would start at a file.
+     */
+    public String relativePath(GeneralTreeNode<FileSystem> from, GeneralTreeNode<FileSystem> to) {
+        if (!from.data.isDirectory()) throw new InputMismatchException("Cannot start a path from a file");
+        var common = directoryTree.lowestCommonAncestor(from, to);
+        if (from == to) return ".";
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = directoryTree.depth(common); i < directoryTree.depth(from); i++) {
+            sb.append("../");
+        }
+        var down = new ArrayList<TreeNode<FileSystem>>();
+        for (TreeNode<FileSystem> n = to; n != common; n = n.parent) {
+            down.add(n);
+        }
+        for (int i = down.size() - 1; i >= 0; i--) {
+            sb.append(down.get(i).data);
+        }
+        return sb.toString();
     }
 
     /**
@@ -165,11 +624,46 @@ public class DirectoryTree {
      * @throws IllegalArgumentException if a file/directory with the same name already exists.
      */
     public GeneralTreeNode<FileSystem> create(FileSystem dir) {
-        if (existsInCurrentDirectory(dir.getName())) {
-            throw new IllegalArgumentException("Directory already exists"); // Check for existing name
+        return create(this.wd, dir);
+    }
+
+    /**
+     * Creates a new file or directory in a directory.
+     *
+     * @param parent the directory to create the item in.
+     * @param dir    the file or directory to create.
+     * @return the node representing the newly created file or directory.
+     * @throws IllegalArgumentException if a file/directory with the same name already exists.
+     */
+    public GeneralTreeNode<FileSystem> create(GeneralTreeNode<FileSystem> parent, FileSystem dir) {
+        long start = System.nanoTime();
+        var event = new TreeEvents.Create();
+        event.begin();
+        try {
+            GeneralTreeNode<FileSystem> node;
+            structure.writeLock().lock();
+            try {
+                if (existsIn(parent, dir.getName())) {
+                    throw new IllegalArgumentException("Directory already exists"); // Check for existing name
+                }
+                validateName(dir.getName());
+                node = this.directoryTree.addChild(parent, dir); // Add new file or directory to tree
+                // Under the same lock, so an index rebuilt meanwhile cannot count the new node before it is added
+                index(node);
+            } finally {
+                structure.writeLock().unlock();
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.path = getPath(node);
+                event.depth = directoryTree.depth(node);
+                event.directory = dir.isDirectory();
+                event.commit();
+            }
+            return node;
+        } finally {
+            CREATE_TIME.record(System.nanoTime() - start);
         }
-        validateName(dir.getName());
-        return this.directoryTree.addChild(this.wd, dir); // Add new file or directory to tree
     }
 
     /**
@@ -178,10 +672,31 @@ public class DirectoryTree {
      * @param dir the node representing the file or directory to remove.
      */
     public void remove(GeneralTreeNode<FileSystem> dir) {
-        if (dir == wd) {
-            cd((GeneralTreeNode<FileSystem>) dir.parent);
+        long start = System.nanoTime();
+        var event = new TreeEvents.Remove();
+        if (event.isEnabled()) {
+            // The item is gone afterwards, so it is described up front
+            event.path = getPath(dir);
+            event.depth = directoryTree.depth(dir);
+            event.nodes = subtreeSize(dir);
+        }
+        event.begin();
+        try {
+            if (dir == wd) {
+                cd((GeneralTreeNode<FileSystem>) dir.parent);
+            }
+            structure.writeLock().lock();
+            try {
+                unindexSubtree(dir);
+                this.directoryTree.remove(dir); // Remove node from tree
+                if (!dir.isLeaf()) invalidatePaths(); // Drops the cached paths of the directories removed
+            } finally {
+                structure.writeLock().unlock();
+            }
+            event.commit();
+        } finally {
+            REMOVE_TIME.record(System.nanoTime() - start);
         }
-        this.directoryTree.remove(dir); // Remove node from tree
     }
 
     /**
@@ -193,11 +708,290 @@ public class DirectoryTree {
      * @throws IllegalArgumentException if a file/directory with the new name already exists.
      */
     public String rename(GeneralTreeNode<FileSystem> dir, String newName) {
-        if (existsInCurrentDirectory(newName)) {
-            throw new IllegalArgumentException("Directory already exists"); // Check for existing name
+        long start = System.nanoTime();
+        try {
+            structure.writeLock().lock();
+            try {
+                if (existsInCurrentDirectory(newName)) {
+                    throw new IllegalArgumentException("Directory already exists"); // Check for existing name
+                }
+                validateName(newName);
+                unindex(dir);
+                var oldName = dir.data.rename(newName); // Rename the file or directory
+                if (!dir.isLeaf()) invalidatePaths(); // The paths of files are not cached
+                index(dir);
+                return oldName;
+            } finally {
+                structure.writeLock().unlock();
+            }
+        } finally {
+            RENAME_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+
+    /**
+     * Sets the modified date of an item, keeping the indexes current.
+     * Only the index of modified dates depends on the date, so it is the only one updated.
+     *
+     * @param node the node holding the item.
+     * @param date the new modified date.
+     */
+    public void setDateModified(GeneralTreeNode<FileSystem> node, LocalDateTime date) {
+        synchronized (modifiedIndex) {
+            modifiedIndex.remove(node);
+            node.data.setDateModified(date);
+            modifiedIndex.add(node);
+        }
+    }
+
+    /**
+     * Finds every item under a directory matching all the given size and date filters, using a range scan of the
+     * index for the first filter and checking the others on each item it returns.
+     *
+     * @param dir     the directory to search.
+     * @param filters the filters, at least one.
+     * @param sink    receives the full path of each match.
+     */
+    public void findByMetadata(GeneralTreeNode<FileSystem> dir, List<MetadataFilter> filters, Consumer<String> sink) {
+        var first = filters.getFirst();
+        indexFor(first.field).range(first.min, first.max, node -> {
+            if (!isBelow(node, dir)) return;
+            for (int i = 1; i < filters.size(); i++) {
+                var filter = filters.get(i);
+                long key = indexFor(filter.field).key(node.data);
+                if (key < filter.min || key > filter.max) return;
+            }
+            sink.accept(getPath(node));
+        });
+    }
+
+    /**
+     * Returns the number and total size of the files with each extension under a directory.
+     *
+     * @param dir the directory.
+     * @return the statistics keyed by extension.
+     */
+    public Map<String, ExtensionIndex.Stats> getExtensionStats(GeneralTreeNode<FileSystem> dir) {
+        return extensionIndex.stats(dir);
+    }
+
+    /**
+     * Returns every file in the tree with an extension.
+     *
+     * @param extension the extension.
+     * @return the files with the extension.
+     */
+    public Set<GeneralTreeNode<FileSystem>> getFilesWithExtension(String extension) {
+        return extensionIndex.files(extension);
+    }
+
+    /**
+     * Returns the ordered index of an attribute.
+     *
+     * @param field the attribute.
+     * @return the index of the attribute.
+     */
+    private MetadataIndex indexFor(MetadataFilter.Field field) {
+        return switch (field) {
+            case SIZE -> sizeIndex;
+            case CTIME -> createdIndex;
+            case MTIME -> modifiedIndex;
+        };
+    }
+
+    /**
+     * Registers an index to be kept current by every change to the tree, adding every item already in the tree.
+     *
+     * @param index the index to register.
+     */
+    public void addIndex(DirectoryIndex index) {
+        indexes.add(index);
+        for (var child : root.children) {
+            forEachInSubtree((GeneralTreeNode<FileSystem>) child, index::add);
+        }
+    }
+
+    /**
+     * Adds a node and all of its descendants to every index.
+     *
+     * @param node the root of the subtree to add.
+     */
+    private void indexSubtree(GeneralTreeNode<FileSystem> node) {
+        structure.readLock().lock();
+        try {
+            forEachInSubtree(node, this::index);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a node and all of its descendants from every index.
+     *
+     * @param node the root of the subtree to remove.
+     */
+    private void unindexSubtree(GeneralTreeNode<FileSystem> node) {
+        structure.readLock().lock();
+        try {
+            forEachInSubtree(node, this::unindex);
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a node to every index.
+     * Each index is locked on its own, so changes to items that keep the shape of the tree can update different
+     * indexes at the same time. The shape of the tree is read locked, since indexes walk the parents and children of
+     * the node, and changes to the shape call this while already holding the write lock.
+     *
+     * @param node the node to add.
+     */
+    private void index(GeneralTreeNode<FileSystem> node) {
+        structure.readLock().lock();
+        try {
+            for (var index : indexes) {
+                synchronized (index) {
+                    index.add(node);
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a node from every index, see {@link #index(GeneralTreeNode)}.
+     *
+     * @param node the node to remove.
+     */
+    private void unindex(GeneralTreeNode<FileSystem> node) {
+        structure.readLock().lock();
+        try {
+            for (var index : indexes) {
+                synchronized (index) {
+                    index.remove(node);
+                }
+            }
+        } finally {
+            structure.readLock().unlock();
         }
-        validateName(newName);
-        return dir.data.rename(newName); // Rename the file or directory
+    }
+
+    /**
+     * Visits a node and all of its descendants in preorder.
+     *
+     * @param node    the root of the subtree.
+     * @param visitor the action to run on every node.
+     */
+    private static void forEachInSubtree(GeneralTreeNode<FileSystem> node,
+                                         Consumer<GeneralTreeNode<FileSystem>> visitor) {
+        visitor.accept(node);
+        for (var child : node.children) {
+            forEachInSubtree((GeneralTreeNode<FileSystem>) child, visitor);
+        }
+    }
+
+    /**
+     * Counts a node and all of its descendants.
+     *
+     * @param node the root of the subtree.
+     * @return the number of nodes in the subtree.
+     */
+    private static int subtreeSize(GeneralTreeNode<FileSystem> node) {
+        int size = 1;
+        for (var child : node.children) {
+            size += subtreeSize((GeneralTreeNode<FileSystem>) child);
+        }
+        return size;
+    }
+
+    /**
+     * Lists the items in the current working directory whose name starts with a prefix, in order of name.
+     *
+     * @param prefix the prefix to complete.
+     * @return the matching items.
+     */
+    public List<GeneralTreeNode<FileSystem>> complete(String prefix) {
+        var matches = new ArrayList<GeneralTreeNode<FileSystem>>();
+        if (wd.children.size() < nameIndex.countWithPrefix(prefix)) {
+            // Fewer children than matches in the whole tree, cheaper to check each child
+            for (var child : wd.children) {
+                if (child.data.getFullName().startsWith(prefix)) matches.add((GeneralTreeNode<FileSystem>) child);
+            }
+            matches.sort(Comparator.comparing(node -> node.data.getFullName()));
+            return matches;
+        }
+        nameIndex.forEachWithPrefix(prefix, (name, node) -> {
+            if (node.parent == wd) matches.add(node);
+        });
+        return matches;
+    }
+
+    /**
+     * Finds every item under a directory whose name starts with a prefix, in order of name.
+     *
+     * @param dir    the directory to search.
+     * @param prefix the prefix to look for.
+     * @param sink   receives the full path of each match.
+     */
+    public void findByPrefix(GeneralTreeNode<FileSystem> dir, String prefix, Consumer<String> sink) {
+        nameIndex.forEachWithPrefix(prefix, (name, node) -> {
+            if (isBelow(node, dir)) sink.accept(getPath(node));
+        });
+    }
+
+    /**
+     * Finds every item under a directory whose name is within an edit distance of a possibly mistyped name, closest
+     * first.
+     *
+     * @param dir         the directory to search.
+     * @param name        the name to look for.
+     * @param maxDistance the largest number of edits to accept.
+     * @param sink        receives the full path and edit distance of each match.
+     */
+    public void findFuzzy(GeneralTreeNode<FileSystem> dir, String name, int maxDistance,
+                          BiConsumer<String, Integer> sink) {
+        fuzzyIndex.search(name, maxDistance, (key, distance, node) -> {
+            if (isBelow(node, dir)) sink.accept(getPath(node), distance);
+        });
+    }
+
+    /**
+     * Finds every item under a directory whose full name contains a fragment, in order of path.
+     *
+     * @param dir      the directory to search.
+     * @param fragment the fragment to look for.
+     * @param sink     receives the full path of each match.
+     */
+    public void findContaining(GeneralTreeNode<FileSystem> dir, String fragment, Consumer<String> sink) {
+        var paths = new ArrayList<String>();
+        for (var node : trigramIndex.containing(fragment)) {
+            if (isBelow(node, dir)) paths.add(getPath(node));
+        }
+        paths.sort(null);
+        paths.forEach(sink);
+    }
+
+    /**
+     * Checks in constant time if an item lies below a directory, using the Euler tour labels of the tree.
+     *
+     * @param node the node holding the item.
+     * @param dir  the directory.
+     * @return true if the item is a descendant of the directory, false otherwise.
+     */
+    private boolean isBelow(GeneralTreeNode<FileSystem> node, GeneralTreeNode<FileSystem> dir) {
+        return node != dir && directoryTree.isAncestor(dir, node);
+    }
+
+    /**
+     * Getter for the root directory.
+     *
+     * @return the root node.
+     */
+    public GeneralTreeNode<FileSystem> getRoot() {
+        return this.root;
     }
 
     /**
@@ -215,7 +1009,15 @@ public class DirectoryTree {
      * @param dir the new current working directory.
      */
     public void cd(GeneralTreeNode<FileSystem> dir) {
+        var event = new TreeEvents.ChangeDirectory();
+        event.begin();
         this.wd = dir; // Set the new working directory
+        event.end();
+        if (event.shouldCommit()) {
+            event.wd = getPath(dir);
+            event.depth = directoryTree.depth(dir);
+            event.commit();
+        }
     }
 
     /**
@@ -225,107 +1027,241 @@ public class DirectoryTree {
      *
      * @param path the string path to navigate.
      * @return the previous working directory node.
-     * @throws IllegalArgumentException if a folder in the path does not exist.
+     * @throws InputMismatchException if a folder in the path does not exist.
      */
-    public GeneralTreeNode<FileSystem> cd(String path) {
-        // Split the path by the file separator
-        String[] directories = path.split("/");
+    public GeneralTreeNode<FileSystem> cd(CharSequence path) {
+        var event = new TreeEvents.ChangeDirectory();
+        event.begin();
         GeneralTreeNode<FileSystem> oldWd = this.wd; // Store the old working directory
-        GeneralTreeNode<FileSystem> current = this.wd;
-
-        if (directories.length == 0 || (directories.length == 1 && directories[0].isBlank())) {
-            return oldWd;
+        this.wd = getDirectoryByPath(path); // Change the current working directory
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path.toString();
+            event.wd = getPath(wd);
+            event.depth = directoryTree.depth(wd);
+            event.commit();
         }
+        return oldWd; // Return the old working directory
+    }
 
-        if (oldWd.data.getName().equals(directories[0])) directories[0] = "";
+    /**
+     * Moves an item into the current working directory.
+     *
+     * @param source the node of the item to move.
+     * @throws InputMismatchException if the item is the working directory, the root, or contains the working directory.
+     */
+    public void move(GeneralTreeNode<FileSystem> source) {
+        if (source == wd) {
+            throw new InputMismatchException("Cannot move the current working directory");
+        }
+        move(source, wd);
+    }
 
-        for (String dir : directories) {
-            if (dir.isEmpty() || dir.equals(".")) {
-                continue; // Skip empty strings and current directory references
-            } else if (dir.equals("..")) {
-                if (current.parent != null) {
-                    current = (GeneralTreeNode<FileSystem>) current.parent;
-                } else {
-                    throw new InputMismatchException("Cannot navigate above the root directory");
+    /**
+     * Moves an item into a directory.
+     *
+     * @param source the node of the item to move.
+     * @param dest   the directory to move the item into.
+     * @throws InputMismatchException if the item is the root or contains the destination.
+     */
+    public void move(GeneralTreeNode<FileSystem> source, GeneralTreeNode<FileSystem> dest) {
+        long start = System.nanoTime();
+        var event = new TreeEvents.Move();
+        if (event.isEnabled()) event.source = getPath(source); // The path changes with the move
+        event.begin();
+        try {
+            structure.writeLock().lock();
+            try {
+                if (source == root) {
+                    throw new InputMismatchException("Cannot move the root directory");
                 }
-            } else {
-                boolean found = false;
-                for (TreeNode<FileSystem> child : current.children) {
-                    if (child.data.getName().equals(dir) && child.data instanceof Directory) {
-                        current = (GeneralTreeNode<FileSystem>) child;
-                        found = true;
-                        break;
-                    }
+                if (source.parent == null) {
+                    throw new InputMismatchException("Cannot move the parent directory");
                 }
-                if (!found) {
-                    throw new InputMismatchException("Directory does not exist in current directory: " + dir);
+
+
+                if (directoryTree.isAncestor(source, dest)) {
+                    throw new InputMismatchException("Cannot move a directory into itself");
+                }
+
+                unindexSubtree(source);
+                directoryTree.move(source, dest);
+                invalidatePaths();
+                indexSubtree(source);
+
+                if (dest.data instanceof Directory) {
+                    setDateModified(dest, LocalDateTime.now());
                 }
+            } finally {
+                structure.writeLock().unlock();
             }
+            event.end();
+            if (event.shouldCommit()) {
+                event.destination = getPath(dest);
+                event.depth = directoryTree.depth(source);
+                event.nodes = subtreeSize(source);
+                event.commit();
+            }
+        } finally {
+            MOVE_TIME.record(System.nanoTime() - start);
         }
-
-        this.wd = current; // Change the current working directory
-        return oldWd; // Return the old working directory
     }
 
-    public void move(GeneralTreeNode<FileSystem> source) {
-
-        if (source == wd) {
-            throw new InputMismatchException("Cannot move the current working directory");
-        }
-        if (source == root) {
-            throw new InputMismatchException("Cannot move the root directory");
-        }
-        if (source.parent == null) {
-            throw new InputMismatchException("Cannot move the parent directory");
-        }
+    /**
+     * Finds the file or directory at the specified path, relative to the current working directory.
+     *
+     * @param path the path of the item.
+     * @return the node of the item.
+     * @throws InputMismatchException if an item in the path does not exist.
+     */
+    public GeneralTreeNode<FileSystem> getNodeByPath(CharSequence path) {
+        return walk(path, 0, path.length(), false);
+    }
 
+    /**
+     * Finds the directory at the specified path, relative to the current working directory.
+     *
+     * @param path the path of the directory.
+     * @return the node of the directory.
+     * @throws InputMismatchException if a folder in the path does not exist.
+     */
+    public GeneralTreeNode<FileSystem> getDirectoryByPath(CharSequence path) {
+        return walk(path, 0, path.length(), true);
+    }
 
-        GeneralTreeNode<FileSystem> parent = (GeneralTreeNode<FileSystem>) source.parent;
-        parent.children.remove(source);
-        wd.children.add(source);
+    /**
+     * Finds the directory holding the last item of a path, without looking up the last item itself.
+     * The name of the last item spans {@link #nameStart(CharSequence)} to {@link #nameEnd(CharSequence)}.
+     *
+     * @param path the path of the item.
+     * @return the node of the directory that holds, or would hold, the item.
+     * @throws InputMismatchException if a folder in the path does not exist.
+     */
+    public GeneralTreeNode<FileSystem> getParentByPath(CharSequence path) {
+        return walk(path, 0, nameStart(path), true);
+    }
 
-        var folder = wd.data;
-        if (folder instanceof Directory) {
-            folder.setDateModified(LocalDateTime.now());
-        }
+    /**
+     * Returns the end of the last name in a path, ignoring trailing separators.
+     *
+     * @param path the path.
+     * @return the index just past the last name.
+     */
+    public static int nameEnd(CharSequence path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == '/') end--;
+        return end;
     }
 
-    public GeneralTreeNode<FileSystem> getNodeByPath(String path) {
-        // Split the path by the file separator
-        String[] directories = path.split("/");
-        GeneralTreeNode<FileSystem> current = this.wd;
+    /**
+     * Returns the start of the last name in a path, ignoring trailing separators.
+     *
+     * @param path the path.
+     * @return the index of the first character of the last name.
+     */
+    public static int nameStart(CharSequence path) {
+        int start = nameEnd(path);
+        while (start > 0 && path.charAt(start - 1) != '/') start--;
+        return start;
+    }
 
-        if (current.data.getName().equals(directories[0])) directories[0] = "";
+    /**
+     * Resolves a slice of a path from the current working directory.
+     * The path is scanned in place and every segment is compared with the names of the children character by
+     * character, so a successful lookup creates no strings or arrays.
+     * A first segment naming the current working directory itself is skipped, as are empty and "." segments.
+     *
+     * @param path            the path.
+     * @param from            the index where the slice starts.
+     * @param to              the index where the slice ends.
+     * @param directoriesOnly whether segments only match directories, otherwise they may also match files.
+     * @return the node the slice leads to.
+     * @throws InputMismatchException if an item in the path does not exist or the path leads above the root.
+     */
+    private GeneralTreeNode<FileSystem> walk(CharSequence path, int from, int to, boolean directoriesOnly) {
+        long started = System.nanoTime();
+        structure.readLock().lock(); // Items on other paths may be changing meanwhile
+        try {
+            var current = this.wd;
+            for (int start = from; start <= to; ) {
+                int end = start;
+                while (end < to && path.charAt(end) != '/') end++;
+                int length = end - start;
 
-        for (String dir : directories) {
-            if (dir.isEmpty() || dir.equals(".")) {
-                continue; // Skip empty strings and current directory references
-            } else if (dir.equals("..")) {
-                if (current.parent != null) {
+                if (length == 0 || (length == 1 && path.charAt(start) == '.')) {
+                    // Skip empty segments and current directory references
+                } else if (start == from && regionEquals(current.data.getName(), path, start, end)) {
+                    // The path may start with the name of the current working directory
+                } else if (length == 2 && path.charAt(start) == '.' && path.charAt(start + 1) == '.') {
+                    if (current.parent == null) {
+                        throw new InputMismatchException("Cannot navigate above the root directory");
+                    }
                     current = (GeneralTreeNode<FileSystem>) current.parent;
                 } else {
-                    throw new InputMismatchException("Cannot navigate above the root directory");
-                }
-            } else {
-                boolean found = false;
-                for (TreeNode<FileSystem> child : current.children) {
-                    if (child.data instanceof Directory && child.data.getName().equals(dir)) {
-                        current = (GeneralTreeNode<FileSystem>) child;
-                        found = true;
-                        break;
-                    } else if (child.data instanceof File && ((File) child.data).getFullName().equals(dir)) {
-                        current = (GeneralTreeNode<FileSystem>) child;
-                        found = true;
-                        break;
+                    var next = findChild(current, path, start, end, directoriesOnly);
+                    if (next == null) {
+                        throw new InputMismatchException(directoriesOnly
+                                ? "Directory does not exist in current directory: " + path.subSequence(start, end)
+                                : "Item does not exist: " + path.subSequence(start, end));
                     }
+                    current = next;
                 }
-                if (!found) {
-                    throw new InputMismatchException("Item does not exist: " + dir);
+                start = end + 1;
+            }
+            return current;
+        } finally {
+            structure.readLock().unlock();
+            LOOKUP_TIME.record(System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Finds the child of a directory named by a segment of a path.
+     * Directories are matched by name and files by name and extension.
+     *
+     * @param dir             the directory.
+     * @param path            the path holding the segment.
+     * @param start           the index where the segment starts.
+     * @param end             the index where the segment ends.
+     * @param directoriesOnly whether files are skipped.
+     * @return the node of the child, or null if there is none.
+     */
+    private static GeneralTreeNode<FileSystem> findChild(GeneralTreeNode<FileSystem> dir, CharSequence path,
+                                                         int start, int end, boolean directoriesOnly) {
+        var children = dir.children;
+        for (int i = 0; i < children.size(); i++) { // Indexed to avoid creating an iterator
+            var child = children.get(i);
+            var data = child.data;
+            if (data instanceof Directory) {
+                if (regionEquals(data.getName(), path, start, end)) return (GeneralTreeNode<FileSystem>) child;
+            } else if (!directoriesOnly && data instanceof File) {
+                // Compare "name.extension" without building the full name
+                var name = data.getName();
+                int dot = start + name.length();
+                if (dot < end && path.charAt(dot) == '.' && regionEquals(name, path, start, dot)
+                        && regionEquals(((File) data).getExtension(), path, dot + 1, end)) {
+                    return (GeneralTreeNode<FileSystem>) child;
                 }
             }
         }
+        return null;
+    }
 
-        return current;
+    /**
+     * Checks if a string is equal to a slice of a character sequence.
+     *
+     * @param s     the string.
+     * @param chars the character sequence.
+     * @param start the index where the slice starts.
+     * @param end   the index where the slice ends.
+     * @return true if the characters are equal, false otherwise.
+     */
+    private static boolean regionEquals(String s, CharSequence chars, int start, int end) {
+        if (s.length() != end - start) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != chars.charAt(start + i)) return false;
+        }
+        return true;
     }
 
     /**
@@ -350,10 +1286,14 @@ public class DirectoryTree {
     /**
      * Getter for the clipboard.
      *
-     * @return the clipboard set containing cut items.
+     * @return the cut items in the order they were cut.
      */
-    public Set<GeneralTreeNode<FileSystem>> getClipboard() {
-        return clipboard;
+    public List<GeneralTreeNode<FileSystem>> getClipboard() {
+        var items = new ArrayList<GeneralTreeNode<FileSystem>>(clipboard.size());
+        for (var handle : clipboard) {
+            items.add(directoryTree.resolve(handle));
+        }
+        return items;
     }
 
     /**
@@ -367,11 +1307,11 @@ public class DirectoryTree {
     public void generateTreeDisplay(GeneralTreeNode<FileSystem> node, StringBuilder sb, String prefix,
                                     String childrenPrefix) {
         sb.append(prefix);
-        sb.append(node.data);
+        sb.append(prefix.isEmpty() ? getPath(node) : node.data); // The top line shows where the display starts
         sb.append('\n');
 
         // Sort children based on the current sorter
-        var kinder = node.children.stream().sorted(sorter).collect(Collectors.toCollection(ArrayList::new));
+        var kinder = list(node);
         for (int i = 0; i < kinder.size(); i++) {
             GeneralTreeNode<FileSystem> child = (GeneralTreeNode<FileSystem>) kinder.get(i);
             if (i < kinder.size() - 1) {
@@ -390,8 +1330,16 @@ public class DirectoryTree {
      * @return the string representation of the tree.
      */
     public String generateTreeDisplay() {
+        var event = new TreeEvents.TreeDisplay();
+        event.begin();
         StringBuilder sb = new StringBuilder();
         generateTreeDisplay(root, sb, "", ""); // Start from the root
+        event.end();
+        if (event.shouldCommit()) {
+            event.nodes = directoryTree.size();
+            event.length = sb.length();
+            event.commit();
+        }
         return sb.toString();
     }
 
@@ -0,0 +1,95 @@
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the files in a directory tree by extension.
+ * Besides the files with each extension, every directory keeps the count and total size of the files with each
+ * extension in its subtree, updated along the chain of ancestors on every change, so breakdowns for any directory are
+ * available without walking it.
+ */
+public class ExtensionIndex implements DirectoryIndex {
+
+    /**
+     * Represents the number and total size of the files with one extension
+     */
+    public static class Stats {
+        private int count;
+        private long bytes;
+
+        /**
+         * Gets the number of files.
+         * @return The number of files
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * Gets the total size of the files.
+         * @return The total size in bytes
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    // Files grouped by extension
+    private final Map<String, Set<GeneralTreeNode<FileSystem>>> files = new HashMap<>();
+
+    // Statistics per extension for the subtree of every directory holding files
+    private final Map<TreeNode<FileSystem>, Map<String, Stats>> subtrees = new HashMap<>();
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        if (!(node.data instanceof File file)) return;
+        var extension = file.getExtension();
+        files.computeIfAbsent(extension, k -> new LinkedHashSet<>()).add(node);
+        for (var dir = node.parent; dir != null; dir = dir.parent) {
+            var stats = subtrees.computeIfAbsent(dir, k -> new HashMap<>()).computeIfAbsent(extension,
+                    k -> new Stats());
+            stats.count++;
+            stats.bytes += file.getSize();
+        }
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        if (!(node.data instanceof File file)) return;
+        var extension = file.getExtension();
+        var group = files.get(extension);
+        if (group == null || !group.remove(node)) return;
+        if (group.isEmpty()) files.remove(extension);
+        for (var dir = node.parent; dir != null; dir = dir.parent) {
+            var breakdown = subtrees.get(dir);
+            var stats = breakdown.get(extension);
+            stats.count--;
+            stats.bytes -= file.getSize();
+            // Drop empty entries so directories without files cost nothing
+            if (stats.count == 0) breakdown.remove(extension);
+            if (breakdown.isEmpty()) subtrees.remove(dir);
+        }
+    }
+
+    /**
+     * Returns the statistics per extension for the files under a directory.
+     *
+     * @param dir the directory.
+     * @return the statistics keyed by extension, empty if the directory holds no files.
+     */
+    public Map<String, Stats> stats(TreeNode<FileSystem> dir) {
+        return Collections.unmodifiableMap(subtrees.getOrDefault(dir, Map.of()));
+    }
+
+    /**
+     * Returns every file with an extension.
+     *
+     * @param extension the extension.
+     * @return the files, empty if there are none.
+     */
+    public Set<GeneralTreeNode<FileSystem>> files(String extension) {
+        return Collections.unmodifiableSet(files.getOrDefault(extension, Set.of()));
+    }
+}
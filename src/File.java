@@ -69,6 +69,7 @@ public class File extends FileSystem {
      *
      * @return The full name of the file, formatted as "name.extension".
      */
+    @Override
     public String getFullName() {
         return name + "." + extension;
     }
@@ -1,4 +1,5 @@
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 
 /**
 *Abstract base class representing file system objects (files or directories).
@@ -8,6 +9,19 @@ public abstract class FileSystem implements Comparable<FileSystem> {
     protected long size;
     protected LocalDateTime dateCreated;
     protected LocalDateTime dateModified;
+    private long createdNanos; // Creation date as epoch nanoseconds, kept with the date so sorts never convert it
+    private long modifiedNanos; // Modification date as epoch nanoseconds, kept with the date
+    private volatile NameKey nameKey; // Key of the name in the order last asked for, null until first asked
+
+    /**
+     * Key of a name in a name order, replaced as a whole so threads sharing the item never see a key paired with the
+     * wrong name or order.
+     * @param order The name order
+     * @param name The name the key was computed from, replaced whenever the item is renamed
+     * @param key The key of the name
+     */
+    private record NameKey(NameOrder order, String name, Object key) {
+    }
 
     /**
      * Constructor for FileSystem objects.
@@ -16,7 +30,8 @@ public abstract class FileSystem implements Comparable<FileSystem> {
     public FileSystem(String name) {
         this.name = name;
         this.dateCreated = LocalDateTime.now();
-        this.dateModified = LocalDateTime.now();
+        this.createdNanos = toEpochNanos(dateCreated);
+        setDateModified(LocalDateTime.now());
         this.size = 0;
     }
 
@@ -28,6 +43,14 @@ public abstract class FileSystem implements Comparable<FileSystem> {
         return name;
     }
 
+    /**
+     * Gets the name of the file or directory as it appears in a path.
+     * @return The full name
+     */
+    public String getFullName() {
+        return name;
+    }
+
     /**
      * Renames the file or directory.
      * @param newName The new name
@@ -36,10 +59,25 @@ public abstract class FileSystem implements Comparable<FileSystem> {
     public String rename(String newName) {
         var temp = this.name;
         this.name = newName;
-        this.dateModified = LocalDateTime.now();
+        setDateModified(LocalDateTime.now());
         return temp;
     }
 
+    /**
+     * Gets the key of the name in a name order, computing it only when the name or the order changed.
+     * @param order The name order
+     * @return The key of the name
+     */
+    public Object getNameKey(NameOrder order) {
+        var current = name;
+        var cached = nameKey;
+        if (cached == null || cached.name() != current || cached.order() != order) {
+            cached = new NameKey(order, current, order.key(current));
+            nameKey = cached;
+        }
+        return cached.key();
+    }
+
     /**
      * Gets the size of the file or directory.
      * @return The size in bytes
@@ -65,6 +103,31 @@ public abstract class FileSystem implements Comparable<FileSystem> {
         return this.dateModified;
     }
 
+    /**
+     * Gets the creation date as the number of nanoseconds since the epoch, without converting it again.
+     * @return The creation date as epoch nanoseconds
+     */
+    public long getCreatedNanos() {
+        return this.createdNanos;
+    }
+
+    /**
+     * Gets the last modification date as the number of nanoseconds since the epoch, without converting it again.
+     * @return The last modification date as epoch nanoseconds
+     */
+    public long getModifiedNanos() {
+        return this.modifiedNanos;
+    }
+
+    /**
+     * Converts a date to the number of nanoseconds since the epoch, for comparing and indexing dates as longs.
+     * @param date The date to convert
+     * @return The date as epoch nanoseconds
+     */
+    static long toEpochNanos(LocalDateTime date) {
+        return date.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + date.getNano();
+    }
+
     /**
      * Checks if this FileSystem object is equal to another object.
      * Two FileSystem objects are considered equal if they have the same name.
@@ -97,7 +160,13 @@ public abstract class FileSystem implements Comparable<FileSystem> {
      */
     public abstract boolean isDirectory();
 
+    /**
+     * Sets the last modification date and time.
+     * Items held by a DirectoryTree should be changed through DirectoryTree.setDateModified so its indexes stay current.
+     * @param dateModified The new modification date and time
+     */
     public void setDateModified(LocalDateTime dateModified) {
         this.dateModified = dateModified;
+        this.modifiedNanos = toEpochNanos(dateModified);
     }
 }
@@ -0,0 +1,234 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.InputMismatchException;
+import java.util.List;
+
+/**
+ * Represents a compiled find query such as "ext java and (size >1M or mtime <1d) and not name Test*".
+ * Conditions are name GLOB, ext EXT, size [<>]N, mtime [<>]AGE, ctime [<>]AGE, type f|d and depth [<>]N, combined
+ * with not, and, or and parentheses; adjacent conditions are joined by and.
+ * The query is compiled into a single fused test where the operands of every and and or are reordered so the
+ * cheapest run first, and conditions on depth also bound how deep a traversal needs to go.
+ */
+public class FindQuery {
+
+    // Relative costs of testing each condition
+    private static final int TYPE_COST = 1;
+    private static final int DEPTH_COST = 1;
+    private static final int SIZE_COST = 1;
+    private static final int EXT_COST = 2;
+    private static final int TIME_COST = 3;
+    private static final int NAME_COST = 4;
+
+    /**
+     * Test of an item at a depth below the directory being searched.
+     */
+    @FunctionalInterface
+    interface NodeTest {
+        /**
+         * Tests an item.
+         *
+         * @param fs    the item.
+         * @param depth the depth of the item, 1 for the children of the directory being searched.
+         * @return true if the item matches, false otherwise.
+         */
+        boolean test(FileSystem fs, int depth);
+    }
+
+    /**
+     * Represents a compiled part of the query together with its cost and the deepest depth it can match at.
+     */
+    private static final class Term {
+        final NodeTest test;
+        final int cost;
+        final int maxDepth;
+
+        Term(NodeTest test, int cost, int maxDepth) {
+            this.test = test;
+            this.cost = cost;
+            this.maxDepth = maxDepth;
+        }
+
+        Term(NodeTest test, int cost) {
+            this(test, cost, Integer.MAX_VALUE);
+        }
+    }
+
+    // The tokens of the query and the position of the next one to parse
+    private final List<String> tokens = new ArrayList<>();
+    private int position = 0;
+
+    // The compiled query
+    private final Term term;
+
+    /**
+     * Compiles a find query.
+     *
+     * @param expression the query.
+     * @throws InputMismatchException if the query is blank or malformed.
+     */
+    public FindQuery(String expression) {
+        for (var token : expression.replace("(", " ( ").replace(")", " ) ").strip().split(" +")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        if (tokens.isEmpty()) throw new InputMismatchException("Missing query");
+        term = parseOr();
+        if (position < tokens.size()) throw new InputMismatchException("Unexpected " + tokens.get(position));
+    }
+
+    /**
+     * Tests an item against the query.
+     *
+     * @param fs    the item.
+     * @param depth the depth of the item, 1 for the children of the directory being searched.
+     * @return true if the item matches, false otherwise.
+     */
+    public boolean test(FileSystem fs, int depth) {
+        return term.test.test(fs, depth);
+    }
+
+    /**
+     * Returns the deepest depth an item can match at, so a traversal can stop descending there.
+     *
+     * @return the depth, or Integer.MAX_VALUE if any depth can match.
+     */
+    public int maxDepth() {
+        return term.maxDepth;
+    }
+
+    private Term parseOr() {
+        var operands = new ArrayList<Term>();
+        operands.add(parseAnd());
+        while (accept("or")) operands.add(parseAnd());
+        return operands.size() == 1 ? operands.getFirst() : or(operands);
+    }
+
+    private Term parseAnd() {
+        var operands = new ArrayList<Term>();
+        operands.add(parseNot());
+        while (position < tokens.size() && !peek("or") && !peek(")")) {
+            accept("and");
+            operands.add(parseNot());
+        }
+        return operands.size() == 1 ? operands.getFirst() : and(operands);
+    }
+
+    private Term parseNot() {
+        if (accept("not")) {
+            var operand = parseNot();
+            NodeTest test = operand.test;
+            return new Term((fs, depth) -> !test.test(fs, depth), operand.cost);
+        }
+        if (accept("(")) {
+            var inner = parseOr();
+            if (!accept(")")) throw new InputMismatchException("Missing )");
+            return inner;
+        }
+        return parseCondition();
+    }
+
+    /**
+     * Parses a single condition and its value.
+     *
+     * @return the compiled condition.
+     */
+    private Term parseCondition() {
+        var keyword = next().toLowerCase();
+        var value = next();
+        return switch (keyword) {
+            case "name" -> {
+                boolean literal = value.indexOf('*') < 0 && value.indexOf('?') < 0;
+                yield literal ? new Term((fs, depth) -> fs.getFullName().equals(value), NAME_COST)
+                        : new Term((fs, depth) -> Glob.wildcardMatch(value, fs.getFullName()), NAME_COST + 1);
+            }
+            case "ext" -> new Term((fs, depth) -> fs instanceof File file && file.getExtension().equals(value),
+                    EXT_COST);
+            case "size" -> {
+                var filter = MetadataFilter.parse("--size", value);
+                yield new Term((fs, depth) -> filter.test(fs), SIZE_COST);
+            }
+            case "mtime", "ctime" -> {
+                var filter = MetadataFilter.parse("--" + keyword, value);
+                yield new Term((fs, depth) -> filter.test(fs), TIME_COST);
+            }
+            case "type" -> switch (value.toLowerCase()) {
+                case "f", "file" -> new Term((fs, depth) -> !fs.isDirectory(), TYPE_COST);
+                case "d", "dir", "directory" -> new Term((fs, depth) -> fs.isDirectory(), TYPE_COST);
+                default -> throw new InputMismatchException("Invalid type, use f or d: " + value);
+            };
+            case "depth" -> parseDepth(value);
+            default -> throw new InputMismatchException("Invalid condition: " + keyword);
+        };
+    }
+
+    /**
+     * Parses a depth condition of the form ">N", "<N" or "N".
+     *
+     * @param value the depth expression.
+     * @return the compiled condition.
+     */
+    private static Term parseDepth(String value) {
+        char op = value.charAt(0);
+        int n = Integer.parseInt(op == '<' || op == '>' ? value.substring(1) : value);
+        return switch (op) {
+            case '>' -> new Term((fs, depth) -> depth > n, DEPTH_COST);
+            case '<' -> new Term((fs, depth) -> depth < n, DEPTH_COST, n - 1);
+            default -> new Term((fs, depth) -> depth == n, DEPTH_COST, n);
+        };
+    }
+
+    /**
+     * Fuses operands into a test matching when all of them match, testing the cheapest first.
+     *
+     * @param operands the operands.
+     * @return the compiled conjunction.
+     */
+    private static Term and(List<Term> operands) {
+        operands.sort(Comparator.comparingInt(t -> t.cost));
+        NodeTest test = operands.getFirst().test;
+        int cost = operands.getFirst().cost;
+        int maxDepth = operands.getFirst().maxDepth;
+        for (int i = 1; i < operands.size(); i++) {
+            NodeTest first = test, second = operands.get(i).test;
+            test = (fs, depth) -> first.test(fs, depth) && second.test(fs, depth);
+            cost += operands.get(i).cost;
+            maxDepth = Math.min(maxDepth, operands.get(i).maxDepth);
+        }
+        return new Term(test, cost, maxDepth);
+    }
+
+    /**
+     * Fuses operands into a test matching when any of them match, testing the cheapest first.
+     *
+     * @param operands the operands.
+     * @return the compiled disjunction.
+     */
+    private static Term or(List<Term> operands) {
+        operands.sort(Comparator.comparingInt(t -> t.cost));
+        NodeTest test = operands.getFirst().test;
+        int cost = operands.getFirst().cost;
+        int maxDepth = operands.getFirst().maxDepth;
+        for (int i = 1; i < operands.size(); i++) {
+            NodeTest first = test, second = operands.get(i).test;
+            test = (fs, depth) -> first.test(fs, depth) || second.test(fs, depth);
+            cost += operands.get(i).cost;
+            maxDepth = Math.max(maxDepth, operands.get(i).maxDepth);
+        }
+        return new Term(test, cost, maxDepth);
+    }
+
+    private boolean peek(String token) {
+        return position < tokens.size() && tokens.get(position).equalsIgnoreCase(token);
+    }
+
+    private boolean accept(String token) {
+        if (!peek(token)) return false;
+        position++;
+        return true;
+    }
+
+    private String next() {
+        if (position >= tokens.size()) throw new InputMismatchException("Unexpected end of query");
+        return tokens.get(position++);
+    }
+}
@@ -0,0 +1,30 @@
+/**
+ * Index of every item in a directory tree by its name, backed by a BK-tree so items with names close to a
+ * mistyped one can be found without computing the edit distance to every name.
+ */
+public class FuzzyIndex implements DirectoryIndex {
+
+    // Nodes keyed by the name of their item
+    private final BKTree<GeneralTreeNode<FileSystem>> tree = new BKTree<>();
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        tree.put(node.data.getName(), node);
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        tree.remove(node.data.getName(), node);
+    }
+
+    /**
+     * Visits every indexed node whose name is within an edit distance of a query, closest names first.
+     *
+     * @param name        the name to match.
+     * @param maxDistance the largest edit distance to accept.
+     * @param visitor     the action to run on every name, distance and node.
+     */
+    public void search(String name, int maxDistance, BKTree.Visitor<GeneralTreeNode<FileSystem>> visitor) {
+        tree.search(name, maxDistance, visitor);
+    }
+}
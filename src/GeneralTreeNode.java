@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Represents a node in a general tree data structure.
@@ -8,8 +9,19 @@ import java.util.ArrayList;
  */
 public class GeneralTreeNode<T extends Comparable<T>> extends TreeNode<T> {
     
-    // List of child nodes for this node
-    ArrayList<TreeNode<T>> children = new ArrayList<>();
+    // List of child nodes for this node, leaf nodes share an immutable empty list instead
+    List<TreeNode<T>> children;
+
+    // Slot of this node in the handle table of its tree, and the generation of that slot when the node was added
+    int id = -1;
+    int generation;
+
+    // Labels of the Euler tour entering and leaving this node, the intervals of descendants nest strictly inside
+    long enter;
+    long exit;
+
+    // Number of edges between this node and the root
+    int depth;
 
     // Alternative approach using a set to store children, which avoids duplicates and might offer more efficient lookups
     // but would require reinitialization for sorting attribute changes.
@@ -22,6 +34,7 @@ public class GeneralTreeNode<T extends Comparable<T>> extends TreeNode<T> {
      */
     GeneralTreeNode(T data) {
         super(data);
+        this.children = new ArrayList<>();
     }
 
     /**
@@ -32,6 +45,29 @@ public class GeneralTreeNode<T extends Comparable<T>> extends TreeNode<T> {
      */
     GeneralTreeNode(T data, TreeNode<T> parent) {
         super(data, parent);
+        this.children = new ArrayList<>();
+    }
+
+    /**
+     * Constructs a GeneralTreeNode with the specified data, parent and child list.
+     * Used by subclasses that do not need a mutable list of children.
+     *
+     * @param data     The data to be stored in this node.
+     * @param parent   The parent of this node.
+     * @param children The list used to hold the children of this node.
+     */
+    protected GeneralTreeNode(T data, TreeNode<T> parent, List<TreeNode<T>> children) {
+        super(data, parent);
+        this.children = children;
+    }
+
+    /**
+     * Checks if this node can never have children.
+     *
+     * @return true if this node is a leaf node, false otherwise.
+     */
+    public boolean isLeaf() {
+        return false;
     }
 
     /**
@@ -0,0 +1,152 @@
+import java.util.ArrayList;
+import java.util.InputMismatchException;
+
+/**
+ * Represents a compiled glob pattern over slash separated paths.
+ * Within a segment '*' matches any run of characters and '?' matches a single character, while a segment made of
+ * '**' matches any number of directories.
+ * Matching is driven one path segment at a time: the set of pattern segments still in play is kept as a bit set, so
+ * a directory whose set becomes empty can be skipped along with everything below it.
+ */
+public class Glob {
+
+    // Bit flagging that the segment just stepped over completes a match
+    private static final long MATCH = 1L << 63;
+
+    // Maximum number of segments, one bit of the state set each
+    private static final int MAX_SEGMENTS = 63;
+
+    // The segments of the pattern
+    private final String[] segments;
+
+    // Whether each segment has no wildcards and can be compared with equals
+    private final boolean[] literal;
+
+    // Whether each segment is '**'
+    private final boolean[] anyDepth;
+
+    // The states before any segment has been matched
+    private final long start;
+
+    /**
+     * Compiles a glob pattern.
+     *
+     * @param pattern the pattern to compile, e.g. "src/**&#47;*.java".
+     * @throws InputMismatchException if the pattern is blank or has too many segments.
+     */
+    public Glob(String pattern) {
+        var parts = new ArrayList<String>();
+        for (var part : pattern.split("/")) {
+            if (part.isEmpty() || part.equals(".")) continue;
+            // Consecutive '**' segments match the same paths as a single one
+            if (part.equals("**") && !parts.isEmpty() && parts.getLast().equals("**")) continue;
+            parts.add(part);
+        }
+        if (parts.isEmpty()) throw new InputMismatchException("Invalid pattern: " + pattern);
+        if (parts.size() > MAX_SEGMENTS) throw new InputMismatchException("Pattern has too many segments");
+
+        segments = parts.toArray(new String[0]);
+        literal = new boolean[segments.length];
+        anyDepth = new boolean[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            anyDepth[i] = segments[i].equals("**");
+            literal[i] = segments[i].indexOf('*') < 0 && segments[i].indexOf('?') < 0;
+        }
+        start = closure(1L);
+    }
+
+    /**
+     * Returns the states to match the children of the starting directory against.
+     *
+     * @return the starting states.
+     */
+    public long start() {
+        return start;
+    }
+
+    /**
+     * Matches the name of an item against every segment in play.
+     *
+     * @param states the states the item is matched against.
+     * @param name   the name of the item.
+     * @return the states to match the item's children against, combined with the match flag.
+     */
+    public long step(long states, String name) {
+        long result = 0;
+        int last = segments.length - 1;
+        for (long s = states; s != 0; s &= s - 1) {
+            int i = Long.numberOfTrailingZeros(s);
+            if (anyDepth[i]) {
+                // '**' swallows this item and stays in play below it, and at the end of the pattern matches anything
+                result |= 1L << i;
+                if (i == last) result |= MATCH;
+            } else if (literal[i] ? segments[i].equals(name) : wildcardMatch(segments[i], name)) {
+                if (i == last) result |= MATCH;
+                else result |= 1L << (i + 1);
+            }
+        }
+        return closure(result & ~MATCH) | (result & MATCH);
+    }
+
+    /**
+     * Checks if a result of {@link #step(long, String)} completes a match.
+     *
+     * @param step the result of a step.
+     * @return true if the item matched the whole pattern, false otherwise.
+     */
+    public static boolean matched(long step) {
+        return (step & MATCH) != 0;
+    }
+
+    /**
+     * Extracts the states for the children of an item from a result of {@link #step(long, String)}.
+     *
+     * @param step the result of a step.
+     * @return the states, zero if nothing below the item can match.
+     */
+    public static long next(long step) {
+        return step & ~MATCH;
+    }
+
+    /**
+     * Adds the segment following every '**' in a set, since '**' may also match no directories at all.
+     *
+     * @param states the set of states.
+     * @return the closed set of states.
+     */
+    private long closure(long states) {
+        for (int i = 0; i < segments.length - 1; i++) {
+            if ((states & (1L << i)) != 0 && anyDepth[i]) states |= 1L << (i + 1);
+        }
+        return states;
+    }
+
+    /**
+     * Matches a name against a segment containing '*' and '?' wildcards.
+     *
+     * @param pattern the segment.
+     * @param name    the name to match.
+     * @return true if the name matches, false otherwise.
+     */
+    static boolean wildcardMatch(String pattern, String name) {
+        int p = 0, n = 0, star = -1, mark = 0;
+        while (n < name.length()) {
+            if (p < pattern.length() && (pattern.charAt(p) == '?' || pattern.charAt(p) == name.charAt(n))) {
+                p++;
+                n++;
+            } else if (p < pattern.length() && pattern.charAt(p) == '*') {
+                // Remember the star and first try matching it against nothing
+                star = p++;
+                mark = n;
+            } else if (star != -1) {
+                // Backtrack, letting the last star swallow one more character
+                p = star + 1;
+                n = ++mark;
+            } else {
+                return false;
+            }
+        }
+        while (p < pattern.length() && pattern.charAt(p) == '*') p++;
+        return p == pattern.length();
+    }
+}
@@ -0,0 +1,105 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Represents a histogram of latencies in nanoseconds that any number of threads can record into without locking.
+ * Values below 16 get a bucket each, and every power of two above that is split into 8 buckets, so a bucket is never
+ * wider than an eighth of its values and the whole range of a long fits in 512 counters. Percentiles are read back as
+ * the upper bound of their bucket, overstating them by at most 12.5%.
+ */
+public class LatencyHistogram {
+
+    // Bits of a value kept below its highest set bit, giving 8 buckets per power of two
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    // Values below this get a bucket each
+    private static final int LINEAR = SUB_BUCKETS << 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB_BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param nanos the value in nanoseconds, negative values count as 0.
+     */
+    public void record(long nanos) {
+        nanos = Math.max(nanos, 0);
+        counts.incrementAndGet(bucket(nanos));
+        // Only contended while the maximum is still going up
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) count += counts.get(i);
+        return count;
+    }
+
+    /**
+     * Returns the largest value recorded.
+     *
+     * @return the largest value in nanoseconds, 0 if none was recorded.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns a percentile of the values recorded.
+     * Values recorded while this runs may or may not be counted.
+     *
+     * @param p the percentile, between 0 and 100.
+     * @return the upper bound of the bucket holding the percentile in nanoseconds, at most the largest value, or 0 if
+     * no value was recorded.
+     */
+    public long percentile(double p) {
+        var snapshot = new long[counts.length()];
+        long total = 0;
+        for (int i = 0; i < snapshot.length; i++) total += snapshot[i] = counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max((long) Math.ceil(p / 100 * total), 1);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(upperBound(i), max());
+        }
+        return max();
+    }
+
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value the non-negative value.
+     * @return the index of the bucket.
+     */
+    static int bucket(long value) {
+        if (value < LINEAR) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        // The highest set bit and the next SUB_BITS bits, between SUB_BUCKETS and 2 * SUB_BUCKETS - 1
+        int mantissa = (int) (value >>> (exponent - SUB_BITS));
+        return (exponent - SUB_BITS) * SUB_BUCKETS + mantissa;
+    }
+
+    /**
+     * Returns the largest value falling in a bucket.
+     *
+     * @param bucket the index of the bucket.
+     * @return the largest value of the bucket.
+     */
+    static long upperBound(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
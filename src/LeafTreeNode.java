@@ -0,0 +1,41 @@
+import java.util.Collections;
+
+/**
+ * Represents a node in a general tree that can never have children, such as a file.
+ * Instead of allocating its own list of children, every leaf node shares the same immutable empty list.
+ *
+ * @param <T> The type of data stored in the node. It must be comparable.
+ */
+public class LeafTreeNode<T extends Comparable<T>> extends GeneralTreeNode<T> {
+
+    /**
+     * Constructs a LeafTreeNode with the specified data and parent.
+     *
+     * @param data   The data to be stored in this node.
+     * @param parent The parent of this node.
+     */
+    LeafTreeNode(T data, TreeNode<T> parent) {
+        super(data, parent, Collections.emptyList());
+    }
+
+    /**
+     * Checks if this node can never have children.
+     *
+     * @return true, as this is a leaf node.
+     */
+    @Override
+    public boolean isLeaf() {
+        return true;
+    }
+
+    /**
+     * Leaf nodes cannot have children.
+     *
+     * @param child The child node to be added.
+     * @throws UnsupportedOperationException always.
+     */
+    @Override
+    public void addChild(GeneralTreeNode<T> child) {
+        throw new UnsupportedOperationException("Cannot add a child to a leaf node");
+    }
+}
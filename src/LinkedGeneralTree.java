@@ -1,3 +1,9 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
 /**
  * Implementation of a general tree data structure using a linked representation.
  * This tree allows nodes to have any number of children and supports basic tree operations.
@@ -12,21 +18,52 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
     // The number of nodes in the tree
     private int size = 0;
 
+    // Decides which values can never have children and so are stored in leaf nodes
+    private final Predicate<? super T> isLeaf;
+
+    // Handle table mapping node ids to nodes, and the current generation of every id
+    private final ArrayList<GeneralTreeNode<T>> handles = new ArrayList<>();
+    private int[] generations = new int[16];
+
+    // Ids freed by removed nodes, reused before the table grows
+    private int[] freeIds = new int[16];
+    private int freeCount = 0;
+
+    // Ancestors 1, 2, 4, ... levels up of the nodes lowestCommonAncestor has visited, kept off the nodes since few
+    // nodes ever need them, and dropped whenever a move or removal changes depths
+    private final Map<GeneralTreeNode<T>, GeneralTreeNode<T>[]> jumps = new IdentityHashMap<>();
+
+    // Smallest spacing between Euler tour labels accepted when relabeling the subtree of an ancestor, larger ranges
+    // need a spacing of at least the square root of their size
+    private static final long MIN_LABEL_GAP = 16;
+
     /**
      * Creates a new tree node with the specified value and parent.
      *
      * @param val    The value to be stored in the new node.
      * @param parent The parent of the new node.
-     * @return A newly created GeneralTreeNode with the given value and parent.
+     * @return A newly created GeneralTreeNode with the given value and parent, or a LeafTreeNode if the value can
+     * never have children.
      */
     protected GeneralTreeNode<T> createNode(T val, TreeNode<T> parent) {
+        if (isLeaf.test(val)) return new LeafTreeNode<>(val, parent);
         return new GeneralTreeNode<>(val, parent);
     }
 
     /**
-     * Constructs an empty LinkedGeneralTree.
+     * Constructs an empty LinkedGeneralTree where every node can have children.
      */
     LinkedGeneralTree() {
+        this(val -> false);
+    }
+
+    /**
+     * Constructs an empty LinkedGeneralTree that stores values matching the given predicate in leaf nodes.
+     *
+     * @param isLeaf The predicate deciding which values can never have children.
+     */
+    LinkedGeneralTree(Predicate<? super T> isLeaf) {
+        this.isLeaf = isLeaf;
     }
 
     /**
@@ -38,10 +75,75 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
      */
     protected GeneralTreeNode<T> validate(TreeNode<T> n) {
         // Check if the node is an instance of GeneralTreeNode
-        if (!(n instanceof GeneralTreeNode)) throw new IllegalArgumentException("Invalid node");
-        // Check if the node's parent reference is pointing to itself (indicating it is no longer in the tree)
-        if (n.parent == n) throw new IllegalArgumentException("Node is no longer in the tree");
-        return (GeneralTreeNode<T>) n;
+        if (!(n instanceof GeneralTreeNode<T> node)) throw new IllegalArgumentException("Invalid node");
+        // Check that the node still owns its id, the generation of the id is bumped when the node is removed
+        if (node.id < 0 || node.id >= handles.size() || generations[node.id] != node.generation
+                || handles.get(node.id) != node) {
+            throw new IllegalArgumentException("Node is no longer in the tree");
+        }
+        return node;
+    }
+
+    /**
+     * Gives a new node an id in the handle table.
+     *
+     * @param node The node to register.
+     * @return The registered node.
+     */
+    private GeneralTreeNode<T> register(GeneralTreeNode<T> node) {
+        int id;
+        if (freeCount > 0) {
+            id = freeIds[--freeCount];
+            handles.set(id, node);
+        } else {
+            id = handles.size();
+            handles.add(node);
+            if (id == generations.length) generations = Arrays.copyOf(generations, id * 2);
+        }
+        node.id = id;
+        node.generation = generations[id];
+        return node;
+    }
+
+    /**
+     * Frees the id of a removed node, invalidating every handle to it.
+     *
+     * @param node The node to release.
+     */
+    private void release(GeneralTreeNode<T> node) {
+        generations[node.id]++;
+        handles.set(node.id, null);
+        if (freeCount == freeIds.length) freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+        freeIds[freeCount++] = node.id;
+    }
+
+    /**
+     * Returns a handle to a node that stays valid for as long as the node is in the tree.
+     * The handle packs the generation of the node's id in the high 32 bits and the id in the low 32 bits.
+     *
+     * @param n The node to get a handle to.
+     * @return The handle of the node.
+     * @throws IllegalArgumentException if the node is invalid.
+     */
+    public long handle(TreeNode<T> n) {
+        var node = validate(n);
+        return ((long) node.generation << 32) | (node.id & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Looks up the node a handle refers to in constant time.
+     *
+     * @param handle The handle of the node.
+     * @return The node the handle refers to.
+     * @throws IllegalArgumentException if the node has been removed from the tree.
+     */
+    public GeneralTreeNode<T> resolve(long handle) {
+        int id = (int) handle;
+        int generation = (int) (handle >>> 32);
+        if (id < 0 || id >= handles.size() || generations[id] != generation) {
+            throw new IllegalArgumentException("Node is no longer in the tree");
+        }
+        return handles.get(id);
     }
 
     /**
@@ -76,7 +178,10 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
      */
     public GeneralTreeNode<T> addRoot(T val) {
         if (!isEmpty()) throw new IllegalArgumentException("Tree is not empty");
-        root = createNode(val, null);
+        root = register(createNode(val, null));
+        root.enter = 0;
+        root.exit = Long.MAX_VALUE;
+        link(root);
         size = 1;
         return root;
     }
@@ -88,15 +193,281 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
      * @param val The value to be stored in the child node.
      * @return The newly created child node.
      * @throws IllegalArgumentException if the parent node is invalid.
+     * @throws UnsupportedOperationException if the parent node is a leaf node.
      */
     public GeneralTreeNode<T> addChild(TreeNode<T> n, T val) {
-        var parent = (GeneralTreeNode<T>) validate(n);
-        var child = createNode(val, parent);
+        var parent = validate(n);
+        if (parent.isLeaf()) throw new UnsupportedOperationException("Cannot add a child to a leaf node");
+        var child = register(createNode(val, parent));
         parent.addChild(child);
+        label(child);
+        link(child);
         size++;
         return child;
     }
 
+    /**
+     * Checks in constant time if a node lies in the subtree of another, using the Euler tour labels of both.
+     * The labels of detached nodes are only meaningful again once they are attached.
+     *
+     * @param ancestor The root of the subtree.
+     * @param n        The node to look for.
+     * @return true if the node is the ancestor itself or one of its descendants, false otherwise.
+     * @throws IllegalArgumentException if either node is invalid.
+     */
+    public boolean isAncestor(TreeNode<T> ancestor, TreeNode<T> n) {
+        var a = validate(ancestor);
+        var node = validate(n);
+        return a.enter <= node.enter && node.exit <= a.exit;
+    }
+
+    /**
+     * Moves a node and its subtree under a new parent.
+     *
+     * @param n      The node to move.
+     * @param parent The new parent of the node.
+     * @throws IllegalArgumentException if either node is invalid or the parent lies in the subtree of the node.
+     * @throws UnsupportedOperationException if the node is the root or the parent is a leaf node.
+     */
+    public void move(TreeNode<T> n, TreeNode<T> parent) {
+        var node = validate(n);
+        if (node == root) throw new UnsupportedOperationException("Cannot move the root");
+        if (isAncestor(node, parent)) throw new IllegalArgumentException("Cannot move a node into its own subtree");
+        detach(node);
+        attach(parent, node);
+    }
+
+    /**
+     * Detaches a node and its subtree from its parent, leaving it in the tree so it can be attached again.
+     * A detached node is its own parent.
+     *
+     * @param n The node to detach.
+     * @throws IllegalArgumentException if the node is invalid.
+     * @throws UnsupportedOperationException if the node is the root.
+     */
+    public void detach(TreeNode<T> n) {
+        var node = validate(n);
+        if (node == root) throw new UnsupportedOperationException("Cannot detach the root");
+        if (node.parent == node) return; // Already detached
+        ((GeneralTreeNode<T>) node.parent).children.remove(node);
+        node.parent = node;
+    }
+
+    /**
+     * Attaches a detached node and its subtree as the last child of a parent, which must not lie in the subtree.
+     *
+     * @param p The new parent of the node.
+     * @param n The detached node.
+     * @throws IllegalArgumentException if either node is invalid or the node is not detached.
+     * @throws UnsupportedOperationException if the parent is a leaf node.
+     */
+    public void attach(TreeNode<T> p, TreeNode<T> n) {
+        var parent = validate(p);
+        var node = validate(n);
+        if (node.parent != node) throw new IllegalArgumentException("Node is not detached");
+        if (parent.isLeaf()) throw new UnsupportedOperationException("Cannot add a child to a leaf node");
+        parent.addChild(node);
+        label(node);
+        linkSubtree(node);
+        synchronized (jumps) {
+            jumps.clear();
+        }
+    }
+
+    /**
+     * Returns the depth of a node, the root being at depth 0.
+     *
+     * @param n The node.
+     * @return The number of edges between the node and the root.
+     * @throws IllegalArgumentException if the node is invalid.
+     */
+    public int depth(TreeNode<T> n) {
+        return validate(n).depth;
+    }
+
+    /**
+     * Finds the lowest common ancestor of two nodes by binary lifting, in time logarithmic in their depth.
+     *
+     * @param first  The first node.
+     * @param second The second node.
+     * @return The deepest node that is an ancestor of, or equal to, both nodes.
+     * @throws IllegalArgumentException if either node is invalid.
+     */
+    public GeneralTreeNode<T> lowestCommonAncestor(TreeNode<T> first, TreeNode<T> second) {
+        var a = validate(first);
+        var b = validate(second);
+        if (a.depth < b.depth) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        synchronized (jumps) {
+            // Lift the deeper node to the depth of the other one
+            for (int k = 0, diff = a.depth - b.depth; diff > 0; k++, diff >>>= 1) {
+                if ((diff & 1) != 0) a = jumpsOf(a)[k];
+            }
+            if (a == b) return a;
+            // Lift both as far as they stay apart, their parents are then the common ancestor
+            var jumpsA = jumpsOf(a);
+            var jumpsB = jumpsOf(b);
+            for (int k = jumpsA.length - 1; k >= 0; k--) {
+                if (k < jumpsA.length && jumpsA[k] != jumpsB[k]) {
+                    a = jumpsA[k];
+                    b = jumpsB[k];
+                    jumpsA = jumpsOf(a);
+                    jumpsB = jumpsOf(b);
+                }
+            }
+            return jumpsA[0];
+        }
+    }
+
+    /**
+     * Returns the binary lifting table of a node, building it and the missing tables of its ancestors first.
+     * Must be called while holding the lock of the tables.
+     *
+     * @param node The node.
+     * @return The ancestors of the node 1, 2, 4, ... levels up.
+     */
+    private GeneralTreeNode<T>[] jumpsOf(GeneralTreeNode<T> node) {
+        var table = jumps.get(node);
+        if (table != null) return table;
+        // Walk up to the nearest ancestor with a table, then build the tables top down from those of the parents
+        var missing = new ArrayList<GeneralTreeNode<T>>();
+        for (var n = node; n != null && !jumps.containsKey(n); n = n == root ? null : (GeneralTreeNode<T>) n.parent) {
+            missing.add(n);
+        }
+        for (int i = missing.size() - 1; i >= 0; i--) {
+            var n = missing.get(i);
+            table = newJumps(32 - Integer.numberOfLeadingZeros(n.depth));
+            if (table.length > 0) table[0] = (GeneralTreeNode<T>) n.parent;
+            for (int k = 1; k < table.length; k++) {
+                table[k] = jumps.get(table[k - 1])[k - 1];
+            }
+            jumps.put(n, table);
+        }
+        return table;
+    }
+
+    /**
+     * Sets the depth of a node from that of its parent.
+     *
+     * @param node The node, attached to its parent.
+     */
+    private void link(GeneralTreeNode<T> node) {
+        node.depth = node == root ? 0 : ((GeneralTreeNode<T>) node.parent).depth + 1;
+    }
+
+    /**
+     * Creates a binary lifting table, since an array of a generic type cannot be created directly.
+     *
+     * @param length The number of ancestors in the table.
+     * @return The table.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Comparable<T>> GeneralTreeNode<T>[] newJumps(int length) {
+        return (GeneralTreeNode<T>[]) new GeneralTreeNode<?>[length];
+    }
+
+    /**
+     * Sets the depths of a subtree, parents before children.
+     *
+     * @param node The root of the subtree, attached to its parent.
+     */
+    private void linkSubtree(GeneralTreeNode<T> node) {
+        link(node);
+        for (var child : node.children) linkSubtree((GeneralTreeNode<T>) child);
+    }
+
+    /**
+     * Gives a node just added as the last child of its parent, and all of its descendants, Euler tour labels taken
+     * from the free range between the previous sibling and the end of the parent.
+     * A leaf takes the two labels right after its previous sibling, while a subtree that may grow takes a share of
+     * the free range that shrinks with the number of siblings before it, so appending many subtrees to one parent
+     * wears the range down harmonically instead of halving it every time.
+     * When the range is too small, the descendants of the nearest ancestor whose range is sparse enough are relabeled
+     * over the first half of its range, leaving the second half free for further appends. Larger ranges must be
+     * sparser to be picked, so a relabel of n nodes happens only after about n appends have filled the room the
+     * previous one left, and relabels take amortized time logarithmic in the size of the tree.
+     *
+     * @param node The node to label.
+     */
+    private void label(GeneralTreeNode<T> node) {
+        var parent = (GeneralTreeNode<T>) node.parent;
+        int index = parent.children.size() - 1;
+        long low = index > 0 ? ((GeneralTreeNode<T>) parent.children.get(index - 1)).exit : parent.enter;
+        long count = count(node) - 1; // Descendants of the node
+        if (node.isLeaf()) {
+            if (parent.exit - low > 2) {
+                node.enter = low + 1;
+                node.exit = low + 2;
+                return;
+            }
+        } else {
+            long share = (parent.exit - low) / (index + 2);
+            if (share / 2 / (2 * count + 1) >= 1) {
+                node.enter = low + 1;
+                node.exit = low + share;
+                spreadChildren(node, share / 2 / (2 * count + 1));
+                return;
+            }
+        }
+
+        TreeNode<T> counted = node; // The child of the ancestor whose subtree has already been counted
+        for (var ancestor = parent; ; ancestor = (GeneralTreeNode<T>) ancestor.parent) {
+            count++; // The child counted last
+            for (var child : ancestor.children) {
+                if (child != counted) count += count((GeneralTreeNode<T>) child);
+            }
+            counted = ancestor;
+            long range = ancestor.exit - ancestor.enter;
+            long step = range / 2 / (2 * count + 1);
+            if (step >= Math.max(MIN_LABEL_GAP, (long) Math.sqrt(range)) || ancestor == root) {
+                if (step < 1) throw new IllegalStateException("Tree is too large to label");
+                spreadChildren(ancestor, step);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Labels the descendants of a node in preorder with evenly spaced labels following its enter label.
+     *
+     * @param node The node, whose labels are kept.
+     * @param step The spacing between consecutive labels.
+     */
+    private void spreadChildren(GeneralTreeNode<T> node, long step) {
+        long last = node.enter;
+        for (var child : node.children) last = spread((GeneralTreeNode<T>) child, last, step);
+    }
+
+    /**
+     * Labels a subtree in preorder with evenly spaced labels following a starting label.
+     *
+     * @param node  The root of the subtree.
+     * @param last  The label preceding the subtree.
+     * @param step  The spacing between consecutive labels.
+     * @return The last label used by the subtree.
+     */
+    private long spread(GeneralTreeNode<T> node, long last, long step) {
+        node.enter = last += step;
+        for (var child : node.children) last = spread((GeneralTreeNode<T>) child, last, step);
+        node.exit = last += step;
+        return last;
+    }
+
+    /**
+     * Counts the nodes in a subtree.
+     *
+     * @param node The root of the subtree.
+     * @return The number of nodes, including the root.
+     */
+    private static <T extends Comparable<T>> long count(GeneralTreeNode<T> node) {
+        long count = 1;
+        for (var child : node.children) count += count((GeneralTreeNode<T>) child);
+        return count;
+    }
+
     /**
      * Sets the value of a given node and returns the old value.
      *
@@ -119,14 +490,21 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
      * @throws UnsupportedOperationException if attempting to remove the root node.
      */
     public void remove(TreeNode<T> n) {
-        var node = (GeneralTreeNode<T>) validate(n);
-        var numberOfChildren = numChildren(n);
-        var children = children(n);
+        var node = validate(n);
         if (node == root) {
             throw new UnsupportedOperationException("Cannot remove the root");
         } else {
+            // Release the ids of the node and all of its descendants so existing handles to them become stale
+            var subtree = new ArrayList<TreeNode<T>>();
+            preorderSubtree(node, subtree);
+            for (var removed : subtree) {
+                release((GeneralTreeNode<T>) removed);
+            }
+            synchronized (jumps) {
+                jumps.clear();
+            }
             // Set each child node's parent reference to itself (disconnected from the tree)
-            for (var child : children) {
+            for (var child : node.children) {
                 child.parent = child;
             }
             // Clear the children list of the node
@@ -135,7 +513,7 @@ public class LinkedGeneralTree<T extends Comparable<T>> extends AbGeneralTree<T>
             ((GeneralTreeNode<T>) node.parent).children.remove(node);
             // Disconnect the node from its parent
             node.parent = node;
-            size -= numberOfChildren + 1; // Update the size of the tree
+            size -= subtree.size(); // Update the size of the tree
         }
     }
 
@@ -1,3 +1,5 @@
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 import static utils.PrintUtils.printf;
@@ -21,6 +23,9 @@ import static utils.PrintUtils.println;
  */
 public class Main {
 
+    // Seconds between writes of the metrics when no interval is given
+    private static final long DEFAULT_DUMP_INTERVAL = 10;
+
     /**
      * Test the directory tree with a sample structure
      *
@@ -80,36 +85,102 @@ public class Main {
      * @param args the command-line arguments
      */
     public static void main(String[] args) {
-        boolean mode = false;
+        if (args.length == 0) {
+            println("Usage: java Main <mode>");
+            println("Modes: menu [record <trace>] [metrics <file> [<seconds>]], "
+                    + "command [record <trace>] [metrics <file> [<seconds>]], "
+                    + "batch <script|-> [buffered|channel|discard] [parallel], "
+                    + "replay <trace> [original|max|<speedup>] [<clients>]");
+            return;
+        }
+        var mode = args[0];
+        if (!mode.equals("menu") && !mode.equals("command") && !mode.equals("batch") && !mode.equals("replay")) {
+            throw new IllegalArgumentException("Invalid mode");
+        }
+        if (mode.equals("batch") && (args.length < 2 || args.length > 4)) {
+            throw new IllegalArgumentException("Batch mode needs a script path, or - to read standard input");
+        }
+        if (mode.equals("replay") && (args.length < 2 || args.length > 4)) {
+            throw new IllegalArgumentException("Replay mode needs a trace path");
+        }
 
-        if (args.length > 0) {
-            if (args[0].equals("menu")) {
-                mode = false;
-            } else if (args[0].equals("command")) {
-                mode = true;
-            } else {
-                throw new IllegalArgumentException("Invalid mode");
+        if (mode.equals("replay")) {
+            try {
+                var pace = args.length > 2 ? args[2] : "original";
+                double speedup = switch (pace) {
+                    case "original" -> 1;
+                    case "max" -> 0;
+                    default -> Double.parseDouble(pace);
+                };
+                int clients = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+                ReplayMode.replay(Path.of(args[1]), speedup, clients, Main::newTree);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error: " + e.getMessage());
+            }
+            return;
+        }
+
+        DirectoryTree directoryTree = newTree();
+
+        if (mode.equals("batch")) {
+            try {
+                var options = Arrays.asList(args).subList(2, args.length);
+                boolean parallel = options.contains("parallel");
+                var output = BatchMode.sink(options.stream().filter(o -> !o.equals("parallel")).findFirst()
+                        .orElse("buffered"));
+                BatchMode.batchMode(args[1], output, parallel, directoryTree);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("Error: " + e.getMessage());
             }
-        } else {
-            println("Usage: java Main <mode>");
-            println("Modes: menu, command");
             return;
         }
 
-        DirectoryTree directoryTree = new DirectoryTree(new Directory(""));
-        testTree(directoryTree);
+        // Options of the interactive modes
+        Path trace = null, metrics = null;
+        long interval = DEFAULT_DUMP_INTERVAL;
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "record" -> {
+                    if (++i == args.length) throw new IllegalArgumentException("Missing trace path");
+                    trace = Path.of(args[i]);
+                }
+                case "metrics" -> {
+                    if (++i == args.length) throw new IllegalArgumentException("Missing metrics path");
+                    metrics = Path.of(args[i]);
+                    if (i + 1 < args.length && args[i + 1].matches("\\d+")) interval = Long.parseLong(args[++i]);
+                }
+                default -> throw new IllegalArgumentException("Invalid option: " + args[i]);
+            }
+        }
 
         println("Welcome to the Virtual File System (VFS)");
-        try (Scanner in = new Scanner(System.in)) {
-            if (mode) {
+        // Input is timed so commands are measured from when their input arrived, see Metrics
+        try (Scanner in = new Scanner(Metrics.timed(System.in))) {
+            if (trace != null) TraceRecorder.start(trace);
+            if (metrics != null) Metrics.startDump(metrics, interval);
+            if (mode.equals("command")) {
                 CommandMode.commandMode(in, directoryTree);
             } else {
                 MenuMode.menuMode(in, directoryTree);
             }
-        } catch (RuntimeException e) {
+        } catch (IOException | RuntimeException e) {
             System.err.println("Error: " + e.getMessage());
+        } finally {
+            TraceRecorder.stop(); // Keeps the commands recorded so far even if the session failed
+            Metrics.stopDump();
         }
     }
 
+    /**
+     * Creates a directory tree holding the sample structure, the state every session and replay starts from
+     *
+     * @return the directory tree
+     */
+    private static DirectoryTree newTree() {
+        DirectoryTree tree = new DirectoryTree(new Directory(""));
+        testTree(tree);
+        return tree;
+    }
+
 
 }
@@ -1,16 +1,30 @@
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.InputMismatchException;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
-import java.util.Set;
 
 import static utils.PrintUtils.*;
 
 /**
  * Represents the menu mode for the virtual file system application.
  * The user can perform various operations on the file system using a menu interface.
+ * Every operation is recorded to the trace as the equivalent batch mode command once its input is complete and before
+ * it runs, so failed operations are part of the trace too, as in command mode. Paths are relative to the working
+ * directory.
  */
 public class MenuMode {
 
+    // Names of the operations of the menu by choice, for the metrics
+    private static final String[] OPERATIONS = {null, "create", "delete", "cd", "rename", "sort", "stat", "cut",
+            "paste", "search", "show_structure", "pwd", "help", "exit", "metrics"};
+
+    // Full paths cut items were taken from by the handles of the items, so pasting them can be recorded as a move.
+    // Handles keep no node alive, and the entries of items no longer on the clipboard are dropped, see dropStale
+    private static final Map<Long, String> cutFrom = new HashMap<>();
+
     /**
      * Represents the type of file system item
      */
@@ -53,6 +67,7 @@ public class MenuMode {
             String name = in.nextLine();
             print("Enter the size of the file in bytes > ");
             long size = in.nextLong();
+            TraceRecorder.record("touch ./" + name + " " + size);
             var nameSplit = name.split("\\.");
             if (nameSplit.length != 2)
                 throw new InputMismatchException("Invalid file name please include the extension");
@@ -64,6 +79,7 @@ public class MenuMode {
             print("Enter the name of the directory > ");
             in.nextLine();
             String name = in.nextLine();
+            TraceRecorder.record("mkdir ./" + name);
             var dir = tree.create(new Directory(name));
             printf("Created directory %s\n", dir.data);
         }
@@ -93,7 +109,7 @@ public class MenuMode {
      */
     public static GeneralTreeNode<FileSystem> getChildChoice(Scanner in, DirectoryTree tree, String action,
                                                              boolean defaultAction) {
-        ArrayList<TreeNode<FileSystem>> contents = tree.getWd().children;
+        List<TreeNode<FileSystem>> contents = tree.list(tree.getWd());
         if (contents.isEmpty()) {
             println("No children");
             return null;
@@ -128,6 +144,7 @@ public class MenuMode {
     public static void delete(Scanner in, DirectoryTree tree) {
         GeneralTreeNode<FileSystem> choice = getChildChoice(in, tree, "delete");
         if (choice != null) {
+            TraceRecorder.record("rm " + local(choice));
             tree.remove(choice);
             println("Deleted " + choice.data);
         }
@@ -173,6 +190,7 @@ public class MenuMode {
             if (tree.isRoot(wd)) {
                 println("At root directory");
             } else {
+                TraceRecorder.record("cd ..");
                 tree.cd((GeneralTreeNode<FileSystem>) wd.parent);
                 Common.printWd(tree);
             }
@@ -184,6 +202,7 @@ public class MenuMode {
             if (!childChoice.data.isDirectory()) {
                 println("Cannot change to a file");
             } else {
+                TraceRecorder.record("cd " + local(childChoice));
                 tree.cd(childChoice);
                 Common.printWd(tree);
             }
@@ -209,6 +228,7 @@ public class MenuMode {
                 print("Enter the new name > ");
                 in.nextLine();
                 newName = in.nextLine();
+                TraceRecorder.record("rename ../" + wd.data + " " + newName);
                 String oldName = tree.rename(wd, newName);
                 Common.renamePrompt(newName, oldName);
             }
@@ -220,6 +240,7 @@ public class MenuMode {
             print("Enter the new name > ");
             in.nextLine();
             newName = in.nextLine();
+            TraceRecorder.record("rename " + local(childChoice) + " " + newName);
             String oldName = tree.rename(childChoice, newName);
             Common.renamePrompt(newName, oldName);
         }
@@ -248,12 +269,19 @@ public class MenuMode {
         }
 
         boolean ascending = order.startsWith("y");
+        String key = switch (choice) {
+            case 1 -> "name";
+            case 2 -> "size";
+            case 3 -> "date_created";
+            case 4 -> "date_modified";
+            default -> throw new InputMismatchException("Invalid sort choice");
+        };
+        TraceRecorder.record("sort " + key + (ascending ? "" : ":desc"));
         switch (choice) {
             case 1 -> tree.sortByName(ascending);
             case 2 -> tree.sortBySize(ascending);
             case 3 -> tree.sortByCreatedDate(ascending);
-            case 4 -> tree.sortByModifiedDate(ascending);
-            default -> throw new InputMismatchException("Invalid sort choice");
+            default -> tree.sortByModifiedDate(ascending);
         }
     }
 
@@ -266,6 +294,7 @@ public class MenuMode {
     public static void stat(Scanner in, DirectoryTree tree) {
         GeneralTreeNode<FileSystem> choice = getChildChoice(in, tree, "view stats for");
         if (choice != null) {
+            TraceRecorder.record("stat " + local(choice));
             var data = choice.data;
             if (data.isDirectory()) {
                 var dir = (Directory) data;
@@ -299,7 +328,7 @@ public class MenuMode {
             var item = getChildChoice(in, tree, "cut");
             if (item != null) items.add(item);
         } else {
-            ArrayList<TreeNode<FileSystem>> contents = tree.getWd().children;
+            List<TreeNode<FileSystem>> contents = tree.list(tree.getWd());
 
             if (contents.isEmpty()) {
                 println("No children");
@@ -307,7 +336,7 @@ public class MenuMode {
             } else if (contents.size() == 1) {
                 println("Only one child to move");
                 items.add((GeneralTreeNode<FileSystem>) contents.getFirst());
-                tree.cut(items);
+                cut(items, tree);
                 return;
             }
 
@@ -332,7 +361,32 @@ public class MenuMode {
                 items.add((GeneralTreeNode<FileSystem>) contents.get(index));
             }
         }
+        cut(items, tree);
+    }
+
+    /**
+     * Cuts items, remembering where they were taken from
+     *
+     * @param items the items
+     * @param tree  the directory tree
+     */
+    private static void cut(ArrayList<GeneralTreeNode<FileSystem>> items, DirectoryTree tree) {
+        var paths = new ArrayList<String>(items.size());
+        for (var item : items) paths.add(tree.getPath(item));
         tree.cut(items);
+        for (int i = 0; i < items.size(); i++) cutFrom.put(tree.getDirectoryTree().handle(items.get(i)), paths.get(i));
+        dropStale(tree);
+    }
+
+    /**
+     * Helper method to forget where items were cut from once they are no longer on the clipboard
+     *
+     * @param tree the directory tree
+     */
+    private static void dropStale(DirectoryTree tree) {
+        var handles = new HashSet<Long>();
+        for (var item : tree.getClipboard()) handles.add(tree.getDirectoryTree().handle(item));
+        cutFrom.keySet().retainAll(handles);
     }
 
     /**
@@ -383,7 +437,46 @@ public class MenuMode {
                 indices.add(index);
             }
         }
+        var wdPath = tree.getPath(tree.getWd());
+        for (var index : indices) {
+            var from = cutFrom.get(tree.getDirectoryTree().handle(clipboard.get(index)));
+            if (from != null) TraceRecorder.record("mv " + relativePath(wdPath, from) + " .");
+        }
         tree.paste(indices);
+        dropStale(tree);
+    }
+
+    /**
+     * Helper method to build the path of an item in the working directory for the trace. The path starts with "./"
+     * so it is never mistaken for a path starting at the working directory itself
+     *
+     * @param item the item
+     * @return the path
+     */
+    private static String local(GeneralTreeNode<FileSystem> item) {
+        return "./" + item.data;
+    }
+
+    /**
+     * Helper method to build the path leading from one full path to another by their text alone, for items no
+     * longer in the tree
+     *
+     * @param from the full path of a directory, ending with a slash
+     * @param to   the full path of an item
+     * @return the relative path, starting with "./" or "../"
+     */
+    static String relativePath(String from, String to) {
+        int common = 0; // Length of the directories both paths start with
+        for (int i = 0; i < Math.min(from.length(), to.length()) && from.charAt(i) == to.charAt(i); i++) {
+            if (from.charAt(i) == '/') common = i + 1;
+        }
+        var sb = new StringBuilder();
+        for (int i = common; i < from.length(); i++) {
+            if (from.charAt(i) == '/') sb.append("../");
+        }
+        if (sb.isEmpty()) sb.append("./"); // As for local(), see above
+        sb.append(to, common, to.length());
+        return sb.toString();
     }
 
     /**
@@ -391,7 +484,7 @@ public class MenuMode {
      *
      * @param clipboard the clipboard
      */
-    private static void printClipboardItems(Set<GeneralTreeNode<FileSystem>> clipboard) {
+    private static void printClipboardItems(List<GeneralTreeNode<FileSystem>> clipboard) {
         int i = 0;
         for (GeneralTreeNode<FileSystem> fileSystemGeneralTreeNode : clipboard) {
             printf("%d: %s\n", i, fileSystemGeneralTreeNode.data);
@@ -419,14 +512,18 @@ public class MenuMode {
                       10 - Show directory structure
                       11 - Print working directory
                       12 - Help
-                      13 - Exit""";
+                      13 - Exit
+                      14 - Metrics""";
         println(help);
         boolean running = true;
         while (running) {
+            int choice = 0;
+            long started = 0;
             try {
                 print("> ");
-                int choice = in.nextInt();
+                choice = in.nextInt();
                 in.nextLine();
+                started = System.nanoTime();
                 switch (choice) {
                     case 1 -> create(in, tree);
                     case 2 -> delete(in, tree);
@@ -437,13 +534,20 @@ public class MenuMode {
                     case 7 -> cut(in, tree);
                     case 8 -> paste(in, tree);
                     case 9 -> Common.search(in, tree);
-                    case 10 -> println(tree);
-                    case 11 -> Common.printWd(tree);
+                    case 10 -> {
+                        TraceRecorder.record("ls");
+                        println(tree);
+                    }
+                    case 11 -> {
+                        TraceRecorder.record("pwd");
+                        Common.printWd(tree);
+                    }
                     case 12 -> println(help);
                     case 13 -> {
                         println("Exiting...");
                         running = false;
                     }
+                    case 14 -> print(Metrics.report());
                     default -> throw new InputMismatchException("Invalid command choice");
                 }
             } catch (InputMismatchException e) {
@@ -455,6 +559,10 @@ public class MenuMode {
             } catch (NumberFormatException e) {
                 println("Invalid number: " + e.getMessage());
 //                in.nextLine();
+            } finally {
+                if (choice > 0 && choice < OPERATIONS.length) {
+                    Metrics.recordCommand("menu." + OPERATIONS[choice], started);
+                }
             }
         }
     }
@@ -0,0 +1,126 @@
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.InputMismatchException;
+
+/**
+ * Represents a range condition on the size or one of the dates of an item, parsed from a find option such as
+ * "--size >1G" or "--mtime <1h".
+ */
+public class MetadataFilter {
+
+    /**
+     * Represents the attribute a filter applies to
+     */
+    enum Field {
+        SIZE, CTIME, MTIME
+    }
+
+    // The attribute the filter applies to
+    final Field field;
+
+    // The inclusive range the attribute must lie in, sizes in bytes and dates in epoch nanoseconds
+    final long min;
+    final long max;
+
+    /**
+     * Constructs a filter over a range of an attribute.
+     *
+     * @param field the attribute.
+     * @param min   the smallest accepted value.
+     * @param max   the largest accepted value.
+     */
+    MetadataFilter(Field field, long min, long max) {
+        this.field = field;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * Checks if an item lies within the range of the filter.
+     *
+     * @param fs the item.
+     * @return true if the attribute of the item is in range, false otherwise.
+     */
+    boolean test(FileSystem fs) {
+        long key = switch (field) {
+            case SIZE -> fs.getSize();
+            case CTIME -> fs.getCreatedNanos();
+            case MTIME -> fs.getModifiedNanos();
+        };
+        return key >= min && key <= max;
+    }
+
+    /**
+     * Parses a filter from a find option and its expression.
+     * Sizes take the form ">N", "<N" or "N" in bytes with an optional K, M, G or T suffix. Dates take the form "<AGE"
+     * (changed within the age) or ">AGE" (changed longer ago than the age) where the age is a number followed by s,
+     * m, h or d.
+     *
+     * @param option     the option, one of --size, --ctime or --mtime.
+     * @param expression the range expression.
+     * @return the parsed filter.
+     * @throws InputMismatchException if the option or the expression is invalid.
+     */
+    public static MetadataFilter parse(String option, String expression) {
+        if (expression.isBlank()) throw new InputMismatchException("Missing value for " + option);
+        char op = expression.charAt(0);
+        var value = op == '<' || op == '>' ? expression.substring(1) : expression;
+        return switch (option) {
+            case "--size" -> {
+                long size = parseSize(value);
+                yield switch (op) {
+                    case '>' -> new MetadataFilter(Field.SIZE, size + 1, Long.MAX_VALUE);
+                    case '<' -> new MetadataFilter(Field.SIZE, Long.MIN_VALUE, size - 1);
+                    default -> new MetadataFilter(Field.SIZE, size, size);
+                };
+            }
+            case "--ctime", "--mtime" -> {
+                var field = option.equals("--ctime") ? Field.CTIME : Field.MTIME;
+                long since = FileSystem.toEpochNanos(LocalDateTime.now().minus(parseAge(value)));
+                yield switch (op) {
+                    case '<' -> new MetadataFilter(field, since, Long.MAX_VALUE);
+                    case '>' -> new MetadataFilter(field, Long.MIN_VALUE, since - 1);
+                    default -> throw new InputMismatchException("Use < or > with " + option);
+                };
+            }
+            default -> throw new InputMismatchException("Invalid option: " + option);
+        };
+    }
+
+    /**
+     * Parses a size with an optional K, M, G or T suffix.
+     *
+     * @param value the size.
+     * @return the size in bytes.
+     */
+    private static long parseSize(String value) {
+        if (value.isEmpty()) throw new InputMismatchException("Missing size");
+        long multiplier = switch (Character.toUpperCase(value.charAt(value.length() - 1))) {
+            case 'K' -> 1_000L;
+            case 'M' -> 1_000_000L;
+            case 'G' -> 1_000_000_000L;
+            case 'T' -> 1_000_000_000_000L;
+            default -> 1L;
+        };
+        if (multiplier != 1) value = value.substring(0, value.length() - 1);
+        return Long.parseLong(value) * multiplier;
+    }
+
+    /**
+     * Parses an age such as 30s, 15m, 1h or 2d.
+     *
+     * @param value the age.
+     * @return the age as a duration.
+     */
+    private static Duration parseAge(String value) {
+        if (value.length() < 2) throw new InputMismatchException("Invalid age: " + value);
+        long amount = Long.parseLong(value.substring(0, value.length() - 1));
+        return switch (value.charAt(value.length() - 1)) {
+            case 's' -> Duration.ofSeconds(amount);
+            case 'm' -> Duration.ofMinutes(amount);
+            case 'h' -> Duration.ofHours(amount);
+            case 'd' -> Duration.ofDays(amount);
+            default -> throw new InputMismatchException("Invalid age unit, use s, m, h or d: " + value);
+        };
+    }
+}
@@ -0,0 +1,67 @@
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Ordered index of every item in a directory tree by a numeric attribute such as its size or one of its dates,
+ * answering range queries by scanning only the keys inside the range.
+ */
+public class MetadataIndex implements DirectoryIndex {
+
+    // Extracts the indexed attribute from an item
+    private final ToLongFunction<FileSystem> key;
+
+    // Nodes grouped by the value of the attribute
+    private final TreeMap<Long, Set<GeneralTreeNode<FileSystem>>> nodes = new TreeMap<>();
+
+    /**
+     * Constructs an empty index over an attribute.
+     *
+     * @param key extracts the indexed attribute from an item.
+     */
+    public MetadataIndex(ToLongFunction<FileSystem> key) {
+        this.key = key;
+    }
+
+    /**
+     * Returns the indexed attribute of an item.
+     *
+     * @param item the item.
+     * @return the value of the attribute.
+     */
+    public long key(FileSystem item) {
+        return key.applyAsLong(item);
+    }
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        nodes.computeIfAbsent(key(node.data), k -> new LinkedHashSet<>()).add(node);
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        long k = key(node.data);
+        var group = nodes.get(k);
+        if (group == null) return;
+        group.remove(node);
+        if (group.isEmpty()) nodes.remove(k);
+    }
+
+    /**
+     * Visits every indexed node whose attribute lies in a range, in order of the attribute.
+     *
+     * @param min     the smallest value in the range.
+     * @param max     the largest value in the range.
+     * @param visitor the action to run on every node.
+     */
+    public void range(long min, long max, Consumer<GeneralTreeNode<FileSystem>> visitor) {
+        if (min > max) return;
+        for (var group : nodes.subMap(min, true, max, true).values()) {
+            for (var node : group) {
+                visitor.accept(node);
+            }
+        }
+    }
+}
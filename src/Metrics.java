@@ -0,0 +1,151 @@
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registry of the latency histograms of every operation of the application, shared by all modes and trees.
+ * Commands are timed from when their last line of input arrived, so the time a user spends typing never counts
+ * towards the latency of a command, and the core methods of {@link DirectoryTree} are timed on their own.
+ * The registry can be printed with the metrics command or written to a file periodically.
+ */
+public class Metrics {
+
+    // Histograms by operation name, e.g. "command.mkdir" or "tree.create"
+    private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    // When the registry was created, ops/s are averaged from here
+    private static final long started = System.nanoTime();
+
+    // When the last byte of input arrived, in nanoseconds
+    private static volatile long lastInput = Long.MIN_VALUE;
+
+    // Writes the report to a file periodically, null when not dumping
+    private static ScheduledExecutorService dumper = null;
+    private static Path dumpFile;
+
+    /**
+     * Returns the histogram of an operation, creating it on first use.
+     * Callers on hot paths keep the histogram rather than looking it up on every call.
+     *
+     * @param operation the name of the operation.
+     * @return the histogram.
+     */
+    public static LatencyHistogram histogram(String operation) {
+        return histograms.computeIfAbsent(operation, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Records a command dispatched by an interactive mode, timed from when it started or from when its last line of
+     * input arrived, whichever is later.
+     *
+     * @param operation the name of the operation.
+     * @param started   when the dispatch started, in nanoseconds.
+     */
+    public static void recordCommand(String operation, long started) {
+        long end = System.nanoTime();
+        histogram(operation).record(end - Math.max(started, lastInput));
+    }
+
+    /**
+     * Wraps an input stream so the arrival of input is noted for {@link #recordCommand(String, long)}.
+     *
+     * @param in the input stream, e.g. System.in.
+     * @return the wrapped stream.
+     */
+    public static InputStream timed(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                lastInput = System.nanoTime();
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                lastInput = System.nanoTime();
+                return n;
+            }
+        };
+    }
+
+    /**
+     * Builds a table of the count, rate and latency percentiles of every operation recorded so far.
+     *
+     * @return the table.
+     */
+    public static String report() {
+        double seconds = Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+        var sb = new StringBuilder();
+        sb.append(String.format("%-24s %10s %10s %10s %10s %10s\n", "Operation", "Count", "Ops/s", "p50 (us)",
+                "p99 (us)", "Max (us)"));
+        for (var entry : new TreeMap<>(histograms).entrySet()) {
+            var histogram = entry.getValue();
+            long count = histogram.count();
+            if (count == 0) continue;
+            sb.append(String.format("%-24s %10d %10.1f %10.1f %10.1f %10.1f\n", entry.getKey(), count,
+                    count / seconds, histogram.percentile(50) / 1e3, histogram.percentile(99) / 1e3,
+                    histogram.max() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Starts appending the report to a file at a fixed interval, replacing any dump already running.
+     *
+     * @param file    the path of the file.
+     * @param seconds the interval in seconds.
+     * @throws IllegalArgumentException if the interval is not positive.
+     */
+    public static synchronized void startDump(Path file, long seconds) {
+        if (seconds <= 0) throw new IllegalArgumentException("Invalid interval: " + seconds);
+        stopDump();
+        dumpFile = file;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "metrics-dump");
+            thread.setDaemon(true); // Never keeps the application running
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                dump();
+            } catch (UncheckedIOException e) {
+                System.err.println("Error: " + e.getMessage()); // Keeps dumping, the file may become writable
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump, writing the report one last time. Does nothing when not dumping.
+     */
+    public static synchronized void stopDump() {
+        if (dumper == null) return;
+        dumper.shutdownNow();
+        dumper = null;
+        dump();
+    }
+
+    /**
+     * Appends the report to the dump file, headed by the current time.
+     */
+    private static void dump() {
+        try {
+            Files.writeString(dumpFile, "# " + LocalDateTime.now() + "\n" + report() + "\n",
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
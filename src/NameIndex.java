@@ -0,0 +1,50 @@
+import java.util.function.BiConsumer;
+
+/**
+ * Index of every item in a directory tree by its full name, backed by a radix trie so prefix queries take time
+ * proportional to the prefix and the number of results.
+ */
+public class NameIndex implements DirectoryIndex {
+
+    // Nodes keyed by the full name of their item
+    private final RadixTrie<GeneralTreeNode<FileSystem>> trie = new RadixTrie<>();
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        trie.put(node.data.getFullName(), node);
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        trie.remove(node.data.getFullName(), node);
+    }
+
+    /**
+     * Visits every indexed node whose full name starts with a prefix, in order of name.
+     *
+     * @param prefix  the prefix.
+     * @param visitor the action to run on every name and node.
+     */
+    public void forEachWithPrefix(String prefix, BiConsumer<String, GeneralTreeNode<FileSystem>> visitor) {
+        trie.forEachWithPrefix(prefix, visitor);
+    }
+
+    /**
+     * Counts the indexed nodes whose full name starts with a prefix.
+     *
+     * @param prefix the prefix.
+     * @return the number of nodes.
+     */
+    public int countWithPrefix(String prefix) {
+        return trie.countWithPrefix(prefix);
+    }
+
+    /**
+     * Returns the number of indexed items.
+     *
+     * @return the number of items.
+     */
+    public int size() {
+        return trie.size();
+    }
+}
@@ -0,0 +1,91 @@
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.Locale;
+
+/**
+ * Ways of comparing the names of file system items, used when searching for, sorting and displaying items.
+ * Each order turns a name into a key once, which {@link FileSystem} caches until the item is renamed, so comparisons
+ * never fold or collate the same name twice.
+ */
+public enum NameOrder {
+    /**
+     * Compares names character by character, so upper case sorts before lower case.
+     */
+    BINARY,
+    /**
+     * Compares names ignoring case.
+     */
+    IGNORE_CASE,
+    /**
+     * Compares names by the rules of the default locale.
+     */
+    LOCALE;
+
+    /**
+     * Computes the key of a name.
+     *
+     * @param name the name.
+     * @return the key, a String or a CollationKey depending on the order.
+     */
+    Object key(String name) {
+        return switch (this) {
+            case BINARY -> name;
+            case IGNORE_CASE -> fold(name);
+            case LOCALE -> Collation.key(name);
+        };
+    }
+
+    /**
+     * Compares two keys computed by this order.
+     *
+     * @param a the first key.
+     * @param b the second key.
+     * @return a negative integer, zero, or a positive integer as the first key sorts before, with or after the second.
+     */
+    int compareKeys(Object a, Object b) {
+        if (this == LOCALE) return ((CollationKey) a).compareTo((CollationKey) b);
+        return ((String) a).compareTo((String) b);
+    }
+
+    /**
+     * Compares the names of two items using their cached keys.
+     *
+     * @param a the first item.
+     * @param b the second item.
+     * @return a negative integer, zero, or a positive integer as the first name sorts before, with or after the second.
+     */
+    public int compare(FileSystem a, FileSystem b) {
+        return compareKeys(a.getNameKey(this), b.getNameKey(this));
+    }
+
+    /**
+     * Folds the case of a name, the same way for every locale.
+     *
+     * @param name the name.
+     * @return the folded name.
+     */
+    static String fold(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Holds the collator of the default locale, created on first use of {@link #LOCALE}.
+     * Kept out of the constants, which are shared by every thread, and locked while in use since a collator is not
+     * safe for concurrent use.
+     */
+    private static final class Collation {
+        private static final Collator COLLATOR = Collator.getInstance();
+
+        /**
+         * Computes the collation key of a name.
+         *
+         * @param name the name.
+         * @return the key.
+         */
+        static CollationKey key(String name) {
+            synchronized (COLLATOR) {
+                return COLLATOR.getCollationKey(name);
+            }
+        }
+    }
+}
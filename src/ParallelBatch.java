@@ -0,0 +1,323 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import utils.PrintUtils;
+
+import static utils.PrintUtils.print;
+
+/**
+ * Runs the commands of a batch script concurrently where they cannot affect each other.
+ * Every create, delete, move and rename is given the set of paths it touches, worked out from the text of the
+ * command alone. A command waits for every earlier command touching one of its paths, or a path above or below one,
+ * so commands on the same part of the tree keep the order of the script while commands on unrelated parts run
+ * together on the common ForkJoin pool.
+ * Only the work around each change overlaps: parsing the command, looking up its paths, which only reads the tree,
+ * and formatting its output. The change itself takes the single write lock of the tree's structure, so changes still
+ * happen one at a time, and a script made only of changes gains little from running in parallel.
+ * Names are cut at their first '.' in these paths, since a file is looked up by name and extension but clashes with
+ * any item of the same name, so "a/x.txt" and "a/x" count as the same path.
+ * Any other command, and any command touching the working directory or one of its parents, is a barrier: the
+ * commands queued before it finish, then it runs on its own. Output is printed in script order, so a script produces
+ * the same output and the same tree, up to the order siblings are stored in, as when run one command at a time.
+ */
+public class ParallelBatch {
+
+    // Most commands queued before they are run, bounding the memory used by the schedule
+    private static final int MAX_QUEUED = 1 << 16;
+
+    /**
+     * Represents a queued command.
+     *
+     * @param number the line number of the command in the script.
+     * @param line   the command line.
+     * @param keys   the paths the command touches.
+     */
+    private record Command(long number, String line, String[] keys) {
+    }
+
+    /**
+     * Represents what has been scheduled on a path.
+     */
+    private static class PathState {
+        // The last command touching exactly this path, -1 if none
+        int last = -1;
+        // The commands touching paths below this one since the last command touching this path
+        List<Integer> below = new ArrayList<>();
+    }
+
+    private final DirectoryTree tree;
+
+    // The commands queued since the last barrier, with the working directory they were planned from
+    private final List<Command> queued = new ArrayList<>();
+    private String[] wdSegments;
+    private String wdName;
+    private String wdKey;
+
+    // The number of commands that failed
+    private long failed = 0;
+
+    /**
+     * Constructs a ParallelBatch running commands against a directory tree.
+     *
+     * @param tree the directory tree.
+     */
+    ParallelBatch(DirectoryTree tree) {
+        this.tree = tree;
+    }
+
+    /**
+     * Returns the number of commands that failed so far.
+     *
+     * @return the number of failed commands.
+     */
+    public long failed() {
+        return failed;
+    }
+
+    /**
+     * Queues a command, or runs it straight away after the queued commands if it is a barrier.
+     *
+     * @param number the line number of the command in the script.
+     * @param line   the command line.
+     */
+    public void add(long number, String line) {
+        if (queued.isEmpty()) {
+            wdSegments = tree.getPath(tree.getWd()).split("/");
+            wdName = tree.getWd().data.getName();
+            wdKey = resolve(".");
+        }
+        int space = line.indexOf(' ');
+        var name = (space < 0 ? line : line.substring(0, space)).toLowerCase();
+        var args = space < 0 ? "" : line.substring(space + 1).strip();
+        var keys = keys(name, args);
+        if (keys == null) {
+            drain();
+            if (!BatchMode.run(line, number, tree)) failed++;
+            return;
+        }
+        queued.add(new Command(number, line, keys));
+        if (queued.size() == MAX_QUEUED) drain();
+    }
+
+    /**
+     * Works out the paths a command touches.
+     * Arguments that do not parse are left to the sequential path, which reports them.
+     *
+     * @param name the name of the command.
+     * @param args the arguments of the command.
+     * @return the paths, or null if the command has to run as a barrier.
+     */
+    private String[] keys(String name, String args) {
+        var parts = args.split(" ");
+        String[] keys = switch (name) {
+            case "create_directory", "mkdir", "delete", "rm" -> args.isBlank() ? null : new String[]{resolve(args)};
+            case "create_file", "touch" -> parts.length == 2 && isFile(parts) ? new String[]{resolve(parts[0])} : null;
+            case "move", "mv" -> parts.length == 2 ? new String[]{resolve(parts[0]), resolve(parts[1])} : null;
+            case "rename" -> {
+                if (parts.length != 2) yield null;
+                var path = resolve(parts[0]);
+                // The new name is also checked against the working directory, so that name is touched too
+                var newName = key(parts[1]);
+                yield new String[]{path, parentOf(path) + "/" + newName, wdKey + "/" + newName};
+            }
+            default -> null;
+        };
+        if (keys == null) return null;
+        for (var key : keys) {
+            if (overlaps(key, wdKey) && key.length() <= wdKey.length()) return null; // Touches the working directory
+        }
+        return keys;
+    }
+
+    /**
+     * Checks if the arguments of a create_file command parse.
+     *
+     * @param parts the path and the size.
+     * @return true if the file name has an extension and the size is a number, false otherwise.
+     */
+    private static boolean isFile(String[] parts) {
+        var path = parts[0];
+        var file = path.substring(DirectoryTree.nameStart(path), DirectoryTree.nameEnd(path));
+        if (file.split("\\.").length != 2) return false;
+        try {
+            Long.parseLong(parts[1]);
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Resolves a path against the working directory using its text alone, following the rules of the path walker.
+     *
+     * @param path the path.
+     * @return the full path with every name cut at its first '.', "" for the root and "/a/b" below it.
+     */
+    private String resolve(String path) {
+        var segments = new ArrayList<String>();
+        for (var segment : wdSegments) {
+            if (!segment.isEmpty()) segments.add(key(segment));
+        }
+        var parts = path.split("/", -1);
+        for (int i = 0; i < parts.length; i++) {
+            var segment = parts[i];
+            if (segment.isEmpty() || segment.equals(".") || (i == 0 && segment.equals(wdName))) continue;
+            if (segment.equals("..")) {
+                if (!segments.isEmpty()) segments.remove(segments.size() - 1);
+            } else {
+                segments.add(key(segment));
+            }
+        }
+        var sb = new StringBuilder();
+        for (var segment : segments) sb.append('/').append(segment);
+        return sb.toString();
+    }
+
+    /**
+     * Cuts a name at its first '.', leaving names starting with '.' whole.
+     *
+     * @param name the name.
+     * @return the part of the name the path is keyed by.
+     */
+    private static String key(String name) {
+        int dot = name.indexOf('.', 1);
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    /**
+     * Returns the path of the parent of a path.
+     *
+     * @param path the full path.
+     * @return the full path of the parent.
+     */
+    private static String parentOf(String path) {
+        return path.substring(0, Math.max(path.lastIndexOf('/'), 0));
+    }
+
+    /**
+     * Checks if two paths are equal or one is below the other.
+     *
+     * @param a a full path.
+     * @param b another full path.
+     * @return true if the paths overlap, false otherwise.
+     */
+    static boolean overlaps(String a, String b) {
+        if (a.length() > b.length()) {
+            var t = a;
+            a = b;
+            b = t;
+        }
+        return b.startsWith(a) && (b.length() == a.length() || b.charAt(a.length()) == '/');
+    }
+
+    /**
+     * Runs every queued command, each after the earlier commands it conflicts with, and prints their output in
+     * script order.
+     */
+    public void drain() {
+        int n = queued.size();
+        if (n == 0) return;
+
+        // Work out the earlier commands each command has to wait for
+        var paths = new HashMap<String, PathState>();
+        var dependents = new ArrayList<List<Integer>>(n);
+        var waiting = new AtomicInteger[n];
+        for (int i = 0; i < n; i++) {
+            dependents.add(new ArrayList<>());
+            var after = new HashSet<Integer>();
+            for (var key : queued.get(i).keys()) dependencies(paths, key, after);
+            for (var key : queued.get(i).keys()) schedule(paths, key, i);
+            waiting[i] = new AtomicInteger(after.size());
+            for (int d : after) dependents.get(d).add(i);
+        }
+
+        var output = new String[n];
+        var done = new CountDownLatch(n);
+        var failures = new AtomicInteger();
+        var error = new AtomicReference<RuntimeException>();
+        var pool = ForkJoinPool.commonPool();
+        var tasks = new Runnable[n];
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            tasks[i] = () -> {
+                var command = queued.get(index);
+                try {
+                    // The same dispatch as sequential mode, with the output kept aside until the batch is done
+                    output[index] = PrintUtils.capture(() -> {
+                        if (!BatchMode.run(command.line(), command.number(), tree)) failures.incrementAndGet();
+                    });
+                } catch (RuntimeException e) {
+                    error.compareAndSet(null, e); // Rethrown once every command is done, as in sequential mode
+                    output[index] = "";
+                } finally {
+                    // Release the commands that were only waiting for this one
+                    for (int d : dependents.get(index)) {
+                        if (waiting[d].decrementAndGet() == 0) pool.execute(tasks[d]);
+                    }
+                    done.countDown();
+                }
+            };
+        }
+        // Find every ready command before starting any, since a finished command may release one while this runs
+        var ready = new ArrayList<Runnable>();
+        for (int i = 0; i < n; i++) {
+            if (waiting[i].get() == 0) ready.add(tasks[i]);
+        }
+        for (var task : ready) pool.execute(task);
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the batch");
+        }
+
+        for (var text : output) print(text);
+        failed += failures.get();
+        queued.clear();
+        if (error.get() != null) throw error.get();
+    }
+
+    /**
+     * Collects the earlier commands conflicting with a command touching a path.
+     *
+     * @param paths the schedule so far.
+     * @param key   the path.
+     * @param after the set the commands are added to.
+     */
+    private static void dependencies(Map<String, PathState> paths, String key, Set<Integer> after) {
+        // The last command on the path or on any path above it
+        for (var path = key; ; path = parentOf(path)) {
+            var state = paths.get(path);
+            if (state != null && state.last >= 0) after.add(state.last);
+            if (path.isEmpty()) break;
+        }
+        // Every command below the path since the last command on the path itself
+        var state = paths.get(key);
+        if (state != null) after.addAll(state.below);
+    }
+
+    /**
+     * Records that a command touches a path.
+     *
+     * @param paths   the schedule so far.
+     * @param key     the path.
+     * @param command the index of the command.
+     */
+    private static void schedule(Map<String, PathState> paths, String key, int command) {
+        var state = paths.computeIfAbsent(key, k -> new PathState());
+        state.last = command;
+        state.below.clear(); // Commands below now wait for this one
+        for (var path = key; !path.isEmpty(); ) {
+            path = parentOf(path);
+            paths.computeIfAbsent(path, k -> new PathState()).below.add(command);
+        }
+    }
+}
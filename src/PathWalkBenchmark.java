@@ -0,0 +1,102 @@
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+import static utils.PrintUtils.printf;
+
+/**
+ * Measures the heap allocated by path lookups, comparing the in-place path walker of {@link DirectoryTree} with the
+ * split and rejoin approach it replaced.
+ * Allocation is read from the per-thread counter of the JVM, so the numbers are exact rather than sampled.
+ * Run with: java PathWalkBenchmark [depth] [fanout] [lookups]
+ */
+public class PathWalkBenchmark {
+
+    // Number of lookups run before measuring, so the JIT has compiled and inlined the walker
+    private static final int WARMUP = 200_000;
+
+    /**
+     * Entry point of the benchmark.
+     *
+     * @param args optional depth of the tree, number of siblings per directory and number of measured lookups.
+     */
+    public static void main(String[] args) {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int fanout = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int lookups = args.length > 2 ? Integer.parseInt(args[2]) : 1_000_000;
+
+        var tree = new DirectoryTree(new Directory(""));
+        var path = new StringBuilder();
+        var root = tree.getWd();
+        // Build a chain of directories, each with siblings to scan past, and end it with a file
+        for (int d = 0; d < depth; d++) {
+            for (int s = 0; s < fanout - 1; s++) tree.create(new Directory("sibling" + s));
+            var dir = tree.create(new Directory("dir" + d));
+            tree.cd(dir);
+            path.append("dir").append(d).append('/');
+        }
+        tree.create(new File("target", "txt", 1));
+        tree.cd(root);
+
+        var filePath = path + "target.txt";
+        var dirPath = path.toString();
+
+        printf("Tree of depth %d with %d children per directory, %d lookups each\n", depth, fanout, lookups);
+        report("getNodeByPath (walker)", lookups, () -> tree.getNodeByPath(filePath));
+        report("getParentByPath (walker)", lookups, () -> tree.getParentByPath(filePath));
+        report("cd (walker)", lookups, () -> {
+            tree.cd(dirPath);
+            tree.cd(root);
+        });
+        report("split and join (old)", lookups, () -> splitLookup(root, filePath));
+    }
+
+    /**
+     * Resolves the parent directory of a path the way the command helpers used to: split the path, rejoin all but
+     * the last segment, then split it again and match each segment with equals.
+     *
+     * @param dir  the directory to start from.
+     * @param path the path of an item.
+     * @return the node of the parent directory, or null if it does not exist.
+     */
+    private static GeneralTreeNode<FileSystem> splitLookup(GeneralTreeNode<FileSystem> dir, String path) {
+        var parts = path.split("/");
+        parts[parts.length - 1] = "";
+        var current = dir;
+        for (var segment : String.join("/", parts).split("/")) {
+            if (segment.isEmpty()) continue;
+            GeneralTreeNode<FileSystem> next = null;
+            for (var child : current.children) {
+                if (child.data instanceof Directory && child.data.getName().equals(segment)) {
+                    next = (GeneralTreeNode<FileSystem>) child;
+                    break;
+                }
+            }
+            if (next == null) return null;
+            current = next;
+        }
+        return current;
+    }
+
+    /**
+     * Runs a lookup repeatedly and prints the bytes allocated and time taken per run.
+     *
+     * @param label   the name of the lookup.
+     * @param lookups the number of measured runs.
+     * @param lookup  the lookup to run.
+     */
+    private static void report(String label, int lookups, Runnable lookup) {
+        var threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().threadId();
+        for (int i = 0; i < WARMUP; i++) lookup.run();
+
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) lookup.run();
+        long elapsed = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+        printf("%-26s %10.2f bytes/lookup %10.1f ns/lookup\n", label, (double) bytes / lookups,
+                (double) elapsed / lookups);
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Represents a compact (radix) trie mapping string keys to one or more values.
+ * Every edge holds a run of characters and every node without values has at least two children, so the number of
+ * nodes stays proportional to the number of keys and a prefix query only visits the nodes below the prefix.
+ *
+ * @param <V> the type of values stored in the trie.
+ */
+public class RadixTrie<V> {
+
+    /**
+     * Represents a node of the trie, reached by the characters of its label.
+     *
+     * @param <V> the type of values stored in the trie.
+     */
+    private static class TrieNode<V> {
+        // The characters on the edge leading to this node
+        String label;
+        // The children of this node sorted by the first character of their label
+        TrieNode<V>[] children = newArray(0);
+        // The values stored under the key ending at this node, null if no key ends here
+        List<V> values;
+        // The number of values stored in the subtree of this node
+        int count;
+
+        TrieNode(String label) {
+            this.label = label;
+        }
+
+        /**
+         * Finds the position of the child whose label starts with the given character.
+         *
+         * @param c the first character of the label.
+         * @return the index of the child, or (-(insertion point) - 1) if there is no such child.
+         */
+        int find(char c) {
+            int low = 0, high = children.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                char m = children[mid].label.charAt(0);
+                if (m < c) low = mid + 1;
+                else if (m > c) high = mid - 1;
+                else return mid;
+            }
+            return -(low + 1);
+        }
+
+        void insertChild(int index, TrieNode<V> child) {
+            var grown = Arrays.copyOf(children, children.length + 1);
+            System.arraycopy(children, index, grown, index + 1, children.length - index);
+            grown[index] = child;
+            children = grown;
+        }
+
+        void removeChild(int index) {
+            var shrunk = Arrays.copyOf(children, children.length - 1);
+            System.arraycopy(children, index + 1, shrunk, index, children.length - index - 1);
+            children = shrunk;
+        }
+    }
+
+    // The root of the trie, reached by the empty string
+    private final TrieNode<V> root = new TrieNode<>("");
+
+    // The number of values in the trie
+    private int size = 0;
+
+    /**
+     * Returns the number of values in the trie.
+     *
+     * @return the number of values.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a value under a key.
+     *
+     * @param key   the key.
+     * @param value the value to add.
+     */
+    public void put(String key, V value) {
+        var node = root;
+        node.count++;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) {
+                // No edge starts with this character, hang the rest of the key off this node
+                var leaf = new TrieNode<V>(key.substring(i));
+                node.insertChild(-index - 1, leaf);
+                node = leaf;
+                node.count++;
+                i = key.length();
+                break;
+            }
+            var child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // The key leaves the edge part way, split the edge at that point
+                var split = new TrieNode<V>(child.label.substring(0, common));
+                split.count = child.count;
+                child.label = child.label.substring(common);
+                split.children = newArray(1);
+                split.children[0] = child;
+                node.children[index] = split;
+                child = split;
+            }
+            node = child;
+            node.count++;
+            i += common;
+        }
+        if (node.values == null) node.values = new ArrayList<>(1);
+        node.values.add(value);
+        size++;
+    }
+
+    /**
+     * Removes a value stored under a key.
+     *
+     * @param key   the key.
+     * @param value the value to remove, compared by identity.
+     * @return true if the value was found and removed, false otherwise.
+     */
+    public boolean remove(String key, V value) {
+        // Remember the path so emptied nodes can be pruned on the way back
+        var path = new ArrayList<TrieNode<V>>();
+        var node = root;
+        int i = 0;
+        path.add(node);
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) return false;
+            node = node.children[index];
+            if (!key.startsWith(node.label, i)) return false;
+            i += node.label.length();
+            path.add(node);
+        }
+        if (node.values == null || !removeIdentity(node.values, value)) return false;
+        if (node.values.isEmpty()) node.values = null;
+        size--;
+        for (var n : path) n.count--;
+
+        // Drop nodes left without values or children and merge nodes left with a single child
+        for (int p = path.size() - 1; p > 0; p--) {
+            var current = path.get(p);
+            var parent = path.get(p - 1);
+            if (current.values != null) break;
+            if (current.children.length == 0) {
+                parent.removeChild(parent.find(current.label.charAt(0)));
+            } else if (current.children.length == 1) {
+                var only = current.children[0];
+                only.label = current.label + only.label;
+                parent.children[parent.find(current.label.charAt(0))] = only;
+                break;
+            } else {
+                break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Visits every key starting with a prefix, in lexicographic order, together with each of its values.
+     *
+     * @param prefix  the prefix.
+     * @param visitor the action to run on every key and value.
+     */
+    public void forEachWithPrefix(String prefix, BiConsumer<String, V> visitor) {
+        var node = root;
+        var key = new StringBuilder();
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = node.find(prefix.charAt(i));
+            if (index < 0) return;
+            node = node.children[index];
+            int common = commonPrefix(node.label, prefix, i);
+            // The prefix must either cover the whole edge or end part way along it
+            if (common < node.label.length() && i + common < prefix.length()) return;
+            key.append(node.label);
+            i += node.label.length();
+        }
+        collect(node, key, visitor);
+    }
+
+    /**
+     * Counts the values stored under keys starting with a prefix, without visiting them.
+     *
+     * @param prefix the prefix.
+     * @return the number of values.
+     */
+    public int countWithPrefix(String prefix) {
+        var node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = node.find(prefix.charAt(i));
+            if (index < 0) return 0;
+            node = node.children[index];
+            int common = commonPrefix(node.label, prefix, i);
+            if (common < node.label.length() && i + common < prefix.length()) return 0;
+            i += node.label.length();
+        }
+        return node.count;
+    }
+
+    /**
+     * Recursively visits every value in the subtree of a node.
+     *
+     * @param node    the node.
+     * @param key     the key leading to the node, restored before returning.
+     * @param visitor the action to run on every key and value.
+     */
+    private void collect(TrieNode<V> node, StringBuilder key, BiConsumer<String, V> visitor) {
+        if (node.values != null) {
+            var k = key.toString();
+            for (var value : node.values) visitor.accept(k, value);
+        }
+        for (var child : node.children) {
+            int length = key.length();
+            key.append(child.label);
+            collect(child, key, visitor);
+            key.setLength(length);
+        }
+    }
+
+    /**
+     * Returns the values stored under a key.
+     *
+     * @param key the key.
+     * @return the values stored under the key, empty if there are none.
+     */
+    public List<V> get(String key) {
+        var node = root;
+        int i = 0;
+        while (i < key.length()) {
+            int index = node.find(key.charAt(i));
+            if (index < 0) return List.of();
+            node = node.children[index];
+            if (!key.startsWith(node.label, i)) return List.of();
+            i += node.label.length();
+        }
+        return node.values == null ? List.of() : node.values;
+    }
+
+    /**
+     * Counts the characters a label shares with a key starting at an offset.
+     *
+     * @param label  the label of an edge.
+     * @param key    the key.
+     * @param offset the offset into the key.
+     * @return the length of the common prefix.
+     */
+    private static int commonPrefix(String label, String key, int offset) {
+        int n = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < n && label.charAt(i) == key.charAt(offset + i)) i++;
+        return i;
+    }
+
+    /**
+     * Removes a value from a list by identity.
+     *
+     * @param values the list.
+     * @param value  the value to remove.
+     * @return true if the value was found, false otherwise.
+     */
+    private static <V> boolean removeIdentity(List<V> values, V value) {
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == value) {
+                values.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Creates an array of trie nodes, since an array of a generic type cannot be created directly.
+     *
+     * @param length the length of the array.
+     * @param <V>    the type of values stored in the nodes.
+     * @return the array.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> TrieNode<V>[] newArray(int length) {
+        return (TrieNode<V>[]) new TrieNode<?>[length];
+    }
+}
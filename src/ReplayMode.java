@@ -0,0 +1,161 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import utils.PrintUtils;
+
+import static utils.PrintUtils.printf;
+
+/**
+ * Load generator replaying a trace recorded by {@link TraceRecorder}.
+ * Every virtual client runs the whole trace on a virtual thread of its own against a fresh directory tree, as a
+ * separate user of the same workload would. Commands are started at their recorded offsets divided by a speedup, or
+ * back to back at full speed, and their output is dropped.
+ * Latency is measured from when a command was due to start rather than when it did, so a slow command also counts
+ * against the commands queued up behind it, as they would be for a real user.
+ */
+public class ReplayMode {
+
+    // Percentiles of the latency reported
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    /**
+     * Replays a trace and prints the throughput and latency percentiles.
+     *
+     * @param trace   the path of the trace file.
+     * @param speedup how many times faster than recorded to replay, 1 for the original pace, 0 for full speed.
+     * @param clients the number of virtual clients.
+     * @param trees   creates the fresh tree each client starts from.
+     * @throws IOException              if the trace cannot be read.
+     * @throws IllegalArgumentException if the speedup is negative or there are no clients.
+     */
+    public static void replay(Path trace, double speedup, int clients, Supplier<DirectoryTree> trees)
+            throws IOException {
+        if (speedup < 0 || Double.isNaN(speedup)) throw new IllegalArgumentException("Invalid speedup: " + speedup);
+        if (clients < 1) throw new IllegalArgumentException("Invalid number of clients: " + clients);
+        var entries = TraceRecorder.read(trace);
+        int n = entries.size();
+
+        var latencies = new long[clients][n];
+        var failed = new AtomicLong();
+        var error = new AtomicReference<RuntimeException>();
+        var ready = new CountDownLatch(clients);
+        var go = new CountDownLatch(1);
+        var started = new AtomicLong();
+        var threads = new ArrayList<Thread>(clients);
+        // Virtual threads, so a large number of clients does not cost a platform thread each
+        var factory = Thread.ofVirtual().name("replay-client-", 0);
+        for (int c = 0; c < clients; c++) {
+            var tree = trees.get(); // Built before the clock starts
+            var client = latencies[c];
+            var thread = factory.unstarted(() -> {
+                ready.countDown();
+                try {
+                    go.await();
+                    failed.addAndGet(run(entries, tree, speedup, started.get(), client));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    error.compareAndSet(null, e);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        PrintUtils.setSink(PrintUtils.discard());
+        long elapsed;
+        try {
+            ready.await();
+            started.set(System.nanoTime());
+            go.countDown();
+            for (var thread : threads) thread.join();
+            elapsed = System.nanoTime() - started.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while replaying");
+        } finally {
+            PrintUtils.useConsole();
+        }
+        if (error.get() != null) throw error.get();
+
+        report(entries, latencies, failed.get(), elapsed, speedup, clients);
+    }
+
+    /**
+     * Runs every command of a trace for one client.
+     *
+     * @param entries   the entries of the trace.
+     * @param tree      the tree of the client.
+     * @param speedup   how many times faster than recorded to replay, 0 for full speed.
+     * @param start     when the replay started, in nanoseconds.
+     * @param latencies where the latency of each command is stored, in nanoseconds.
+     * @return the number of commands that failed.
+     */
+    private static long run(List<TraceRecorder.Entry> entries, DirectoryTree tree, double speedup, long start,
+                            long[] latencies) {
+        long failed = 0;
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            long due;
+            if (speedup > 0) {
+                due = start + (long) (entry.offset() * 1000 / speedup);
+                // Sleep until the command is due, a late command starts straight away
+                for (long wait; (wait = due - System.nanoTime()) > 0; ) LockSupport.parkNanos(wait);
+            } else {
+                due = System.nanoTime();
+            }
+            if (!BatchMode.run(entry.line(), i + 1, tree)) failed++;
+            latencies[i] = System.nanoTime() - due;
+        }
+        return failed;
+    }
+
+    /**
+     * Prints the throughput and latency percentiles of a replay.
+     *
+     * @param entries   the entries of the trace.
+     * @param latencies the latency of every command of every client, in nanoseconds.
+     * @param failed    the number of commands that failed.
+     * @param elapsed   how long the replay took, in nanoseconds.
+     * @param speedup   the speedup the trace was replayed at.
+     * @param clients   the number of virtual clients.
+     */
+    private static void report(List<TraceRecorder.Entry> entries, long[][] latencies, long failed, long elapsed,
+                               double speedup, int clients) {
+        var all = new long[clients * entries.size()];
+        for (int c = 0; c < clients; c++) {
+            System.arraycopy(latencies[c], 0, all, c * entries.size(), entries.size());
+        }
+        Arrays.sort(all);
+        double seconds = elapsed / 1e9;
+
+        printf("Replayed %d commands x %d clients at %s (%d failed) in %.3f s, %.0f commands/s\n",
+                entries.size(), clients, speedup == 0 ? "full speed" : speedup + "x", failed, seconds,
+                all.length / Math.max(seconds, 1e-9));
+        if (all.length == 0) return;
+        printf("Latency (us):");
+        for (var p : PERCENTILES) printf(" p%s %.1f", p % 1 == 0 ? String.valueOf((int) p) : String.valueOf(p),
+                percentile(all, p) / 1e3);
+        printf(" max %.1f\n", all[all.length - 1] / 1e3);
+    }
+
+    /**
+     * Returns a percentile of sorted values by the nearest rank method.
+     *
+     * @param sorted the values in ascending order.
+     * @param p      the percentile, between 0 and 100.
+     * @return the smallest value at least p percent of the values are at or below.
+     */
+    static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p / 100 * sorted.length);
+        return sorted[Math.min(Math.max(rank - 1, 0), sorted.length - 1)];
+    }
+}
@@ -0,0 +1,60 @@
+import java.util.Comparator;
+import java.util.InputMismatchException;
+
+/**
+ * Compiles sort specifications such as "ext,size:desc,name" into a single comparator of tree nodes.
+ * Every key sorts ascending unless followed by ":desc", and later keys only break ties left by earlier ones. Sizes
+ * and dates are compared as primitive longs, so sorting never boxes a key.
+ */
+public class SortSpec {
+
+    /**
+     * Compiles a sort specification.
+     * Keys are name, ext, size, ctime (or date_created) and mtime (or date_modified), each optionally followed by
+     * ":asc" or ":desc", separated by commas.
+     *
+     * @param spec   the specification.
+     * @param byName the ordering to use for the name key.
+     * @return the comparator.
+     * @throws InputMismatchException if the specification is blank or has an unknown key or direction.
+     */
+    public static Comparator<TreeNode<FileSystem>> compile(String spec, Comparator<TreeNode<FileSystem>> byName) {
+        Comparator<TreeNode<FileSystem>> result = null;
+        for (var term : spec.split(",")) {
+            var parts = term.strip().split(":");
+            if (parts.length > 2 || parts[0].isBlank()) throw new InputMismatchException("Invalid sort key: " + term);
+
+            var key = keyComparator(parts[0].toLowerCase(), byName);
+            if (parts.length == 2) {
+                key = switch (parts[1].toLowerCase()) {
+                    case "asc" -> key;
+                    case "desc" -> key.reversed();
+                    default -> throw new InputMismatchException("Invalid sort direction: " + parts[1]);
+                };
+            }
+            result = result == null ? key : result.thenComparing(key);
+        }
+        if (result == null) throw new InputMismatchException("Missing sort keys");
+        return result;
+    }
+
+    /**
+     * Returns the ascending comparator of a single key.
+     *
+     * @param key    the name of the key.
+     * @param byName the ordering to use for the name key.
+     * @return the comparator.
+     */
+    private static Comparator<TreeNode<FileSystem>> keyComparator(String key, Comparator<TreeNode<FileSystem>> byName) {
+        return switch (key) {
+            case "name" -> byName;
+            // Directories have no extension and sort before every file
+            case "ext" -> Comparator.comparing(n -> n.data instanceof File file ? file.getExtension() : "");
+            case "size" -> Comparator.comparingLong(n -> n.data.getSize());
+            // Dates are compared by the epoch nanoseconds each item keeps, so no comparison converts a date
+            case "ctime", "date_created" -> Comparator.comparingLong(n -> n.data.getCreatedNanos());
+            case "mtime", "date_modified" -> Comparator.comparingLong(n -> n.data.getModifiedNanos());
+            default -> throw new InputMismatchException("Invalid sort key: " + key);
+        };
+    }
+}
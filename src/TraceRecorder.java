@@ -0,0 +1,182 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the commands of an interactive session to a trace file, so the session can be replayed later by
+ * {@link ReplayMode}.
+ * Every command is stored as the line batch mode would run, e.g. "mkdir a/b", with the time it was run at. A trace
+ * starts with a magic number and a version, followed by one entry per command: the microseconds since the previous
+ * entry as a variable length number, then the length of the line in bytes as another, then the line in UTF-8. Most
+ * entries take a few bytes on top of their line, and lines of any length can be stored. Traces of the first version,
+ * which stored lines in modified UTF-8 and so could not hold lines over 64 KB, can still be read.
+ */
+public class TraceRecorder {
+
+    // "VFST" in ASCII, marks the start of a trace file
+    private static final int MAGIC = 0x56465354;
+    private static final byte VERSION = 2;
+
+    /**
+     * Represents a recorded command.
+     *
+     * @param offset the microseconds from the start of the session to the command.
+     * @param line   the command line, in batch mode syntax.
+     */
+    public record Entry(long offset, String line) {
+    }
+
+    // The trace being written, null when not recording
+    private static DataOutputStream out = null;
+
+    // When recording started and when the last command was recorded, in nanoseconds
+    private static long start;
+    private static long last;
+
+    /**
+     * Starts recording to a trace file, replacing any file already there.
+     *
+     * @param trace the path of the trace file.
+     * @throws IOException if the file cannot be created.
+     */
+    public static void start(Path trace) throws IOException {
+        stop();
+        out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(trace)));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        start = System.nanoTime();
+        last = 0;
+    }
+
+    /**
+     * Stops recording, writing out the rest of the trace. Does nothing when not recording.
+     */
+    public static void stop() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            out = null;
+        }
+    }
+
+    /**
+     * Checks if commands are being recorded.
+     *
+     * @return true if recording, false otherwise.
+     */
+    public static boolean isRecording() {
+        return out != null;
+    }
+
+    /**
+     * Records a command run now. Does nothing when not recording.
+     *
+     * @param line the command line, in batch mode syntax.
+     */
+    public static void record(String line) {
+        if (out == null) return;
+        long offset = (System.nanoTime() - start) / 1000;
+        try {
+            writeVarLong(out, Math.max(offset - last, 0));
+            var bytes = line.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(out, bytes.length);
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        last = Math.max(offset, last);
+    }
+
+    /**
+     * Reads every entry of a trace file.
+     *
+     * @param trace the path of the trace file.
+     * @return the entries in the order they were recorded.
+     * @throws IOException if the file cannot be read or is not a trace.
+     */
+    public static List<Entry> read(Path trace) throws IOException {
+        var entries = new ArrayList<Entry>();
+        try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(trace)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a trace file: " + trace);
+            int version = in.readByte();
+            if (version != 1 && version != VERSION) throw new IOException("Unsupported trace version: " + version);
+            long offset = 0;
+            while (true) {
+                long delta;
+                try {
+                    delta = readVarLong(in);
+                } catch (EOFException e) {
+                    break; // Clean end of the trace
+                }
+                offset += delta;
+                entries.add(new Entry(offset, version == 1 ? in.readUTF() : readLine(in)));
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated trace file: " + trace);
+        }
+        return entries;
+    }
+
+    /**
+     * Reads a line written by {@link #record(String)}: its length in bytes, then its bytes in UTF-8.
+     *
+     * @param in the stream.
+     * @return the line.
+     * @throws IOException if the stream cannot be read or the line is cut short.
+     */
+    private static String readLine(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE) throw new IOException("Invalid trace entry");
+        var bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a non-negative number in 7 bit groups, low group first, with the high bit set on all but the last byte.
+     *
+     * @param out   the stream.
+     * @param value the number.
+     * @throws IOException if the stream cannot be written.
+     */
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarLong(DataOutputStream, long)}.
+     *
+     * @param in the stream.
+     * @return the number.
+     * @throws IOException if the stream cannot be read, EOFException if it ends before the number starts.
+     */
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                if (shift == 0) throw new EOFException();
+                throw new IOException("Truncated trace entry");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+            if (shift > 56) throw new IOException("Invalid trace entry");
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder events emitted by the directory tree, so slow operations can be lined up with garbage
+ * collection, allocation and lock events in a recording of a real session.
+ * Record with e.g. java -XX:StartFlightRecording=filename=vfs.jfr Main command, or start a recording on a running
+ * session with jcmd, and read the events with jfr print --categories "Virtual File System" vfs.jfr.
+ * Events are only committed for operations that complete, and are only filled in while a recording is running, so
+ * the operations cost next to nothing extra otherwise.
+ */
+final class TreeEvents {
+
+    // Category every event is listed under
+    private static final String CATEGORY = "Virtual File System";
+
+    private TreeEvents() {
+    }
+
+    @Name("vfs.Create")
+    @Label("Create")
+    @Category(CATEGORY)
+    @Description("Creates a file or directory")
+    static final class Create extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Depth")
+        @Description("Depth of the new item, the root is at depth 0")
+        int depth;
+
+        @Label("Directory")
+        boolean directory;
+    }
+
+    @Name("vfs.Remove")
+    @Label("Remove")
+    @Category(CATEGORY)
+    @Description("Removes a file or directory along with its contents")
+    static final class Remove extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Depth")
+        int depth;
+
+        @Label("Nodes")
+        @Description("Number of items removed, including the item itself")
+        int nodes;
+    }
+
+    @Name("vfs.Move")
+    @Label("Move")
+    @Category(CATEGORY)
+    @Description("Moves a file or directory into another directory")
+    static final class Move extends Event {
+        @Label("Source")
+        String source;
+
+        @Label("Destination")
+        String destination;
+
+        @Label("Depth")
+        @Description("Depth of the item after the move")
+        int depth;
+
+        @Label("Nodes")
+        @Description("Number of items moved, including the item itself")
+        int nodes;
+    }
+
+    @Name("vfs.Search")
+    @Label("Search")
+    @Category(CATEGORY)
+    @Description("Searches the working directory for an item by name")
+    static final class Search extends Event {
+        @Label("Name")
+        String name;
+
+        @Label("Result")
+        @Description("Full path of the item found, absent if none was")
+        String result;
+
+        @Label("Depth")
+        @Description("Depth of the item found, -1 if none was")
+        int depth;
+    }
+
+    @Name("vfs.ChangeDirectory")
+    @Label("Change Directory")
+    @Category(CATEGORY)
+    @Description("Changes the working directory")
+    static final class ChangeDirectory extends Event {
+        @Label("Path")
+        @Description("Path as given, relative to the old working directory")
+        String path;
+
+        @Label("Working Directory")
+        String wd;
+
+        @Label("Depth")
+        @Description("Depth of the new working directory")
+        int depth;
+    }
+
+    @Name("vfs.TreeDisplay")
+    @Label("Tree Display")
+    @Category(CATEGORY)
+    @Description("Draws the whole directory tree")
+    static final class TreeDisplay extends Event {
+        @Label("Nodes")
+        @Description("Number of items drawn, one per line")
+        int nodes;
+
+        @Label("Characters")
+        int length;
+    }
+}
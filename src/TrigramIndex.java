@@ -0,0 +1,100 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of every item in a directory tree by the three character runs (trigrams) of its full name, so items whose
+ * name contains a fragment can be found by intersecting the posting lists of the fragment's trigrams instead of
+ * scanning every name.
+ * Names are padded with a boundary character on both sides, so names and fragments shorter than three characters
+ * are still covered.
+ */
+public class TrigramIndex implements DirectoryIndex {
+
+    // Character marking the start and end of a name, never part of a valid name
+    private static final char BOUNDARY = '\0';
+
+    // Nodes keyed by each trigram of the padded full name of their item
+    private final Map<Long, Set<GeneralTreeNode<FileSystem>>> postings = new HashMap<>();
+
+    @Override
+    public void add(GeneralTreeNode<FileSystem> node) {
+        var padded = BOUNDARY + node.data.getFullName() + BOUNDARY;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            postings.computeIfAbsent(trigram(padded, i), k -> new HashSet<>()).add(node);
+        }
+    }
+
+    @Override
+    public void remove(GeneralTreeNode<FileSystem> node) {
+        var padded = BOUNDARY + node.data.getFullName() + BOUNDARY;
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            var key = trigram(padded, i);
+            var nodes = postings.get(key);
+            if (nodes != null && nodes.remove(node) && nodes.isEmpty()) postings.remove(key);
+        }
+    }
+
+    /**
+     * Finds every indexed node whose full name contains a fragment.
+     *
+     * @param fragment the fragment, not empty.
+     * @return the matching nodes, in no particular order.
+     */
+    public List<GeneralTreeNode<FileSystem>> containing(String fragment) {
+        var matches = new ArrayList<GeneralTreeNode<FileSystem>>();
+        if (fragment.length() < 3) {
+            // Too short to have a trigram of its own, gather every trigram containing it instead
+            var candidates = new HashSet<GeneralTreeNode<FileSystem>>();
+            for (var entry : postings.entrySet()) {
+                if (decode(entry.getKey()).contains(fragment)) candidates.addAll(entry.getValue());
+            }
+            for (var node : candidates) {
+                if (node.data.getFullName().contains(fragment)) matches.add(node);
+            }
+            return matches;
+        }
+
+        // Intersect starting from the shortest posting list, so the fewest candidates are checked
+        var lists = new ArrayList<Set<GeneralTreeNode<FileSystem>>>();
+        for (int i = 0; i + 3 <= fragment.length(); i++) {
+            var nodes = postings.get(trigram(fragment, i));
+            if (nodes == null) return matches;
+            lists.add(nodes);
+        }
+        lists.sort((a, b) -> Integer.compare(a.size(), b.size()));
+        candidates:
+        for (var node : lists.getFirst()) {
+            for (int i = 1; i < lists.size(); i++) {
+                if (!lists.get(i).contains(node)) continue candidates;
+            }
+            // Sharing every trigram does not guarantee the trigrams appear in order, so check the name itself
+            if (node.data.getFullName().contains(fragment)) matches.add(node);
+        }
+        return matches;
+    }
+
+    /**
+     * Packs the three characters of a string starting at an offset into a key.
+     *
+     * @param s      the string.
+     * @param offset the offset of the first character.
+     * @return the trigram key.
+     */
+    private static long trigram(String s, int offset) {
+        return ((long) s.charAt(offset) << 32) | ((long) s.charAt(offset + 1) << 16) | s.charAt(offset + 2);
+    }
+
+    /**
+     * Unpacks a trigram key into its characters, boundaries included.
+     *
+     * @param key the trigram key.
+     * @return the three characters.
+     */
+    private static String decode(long key) {
+        return new String(new char[]{(char) (key >>> 32), (char) (key >>> 16), (char) key});
+    }
+}
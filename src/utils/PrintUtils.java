@@ -1,16 +1,182 @@
 package utils;
 
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Formatter;
+
+/**
+ * Output helpers used by every mode of the application.
+ * By default output goes straight to {@link System#out}, so prompts show up before input is read. A sink can be set
+ * instead, in which case output is only written when the sink fills up or {@link #flush()} is called, which the
+ * modes do between commands.
+ * Every method holds the lock of this class while writing, so lines printed by several threads never interleave.
+ */
 public class PrintUtils {
+
+    // Size of the buffers of the sinks created here
+    public static final int DEFAULT_BUFFER = 1 << 16;
+
+    // Where output goes, null to write to System.out directly
+    private static Writer sink = null;
+
+    // Formats straight into the sink without building a string
+    private static Formatter formatter = null;
+
+    // Output of the current thread while it is being captured, see capture
+    private static final ThreadLocal<StringBuilder> captured = new ThreadLocal<>();
+
+    /**
+     * Routes all output through a sink until {@link #useConsole()} is called.
+     * The previous sink is flushed first.
+     *
+     * @param writer the sink.
+     */
+    public static synchronized void setSink(Writer writer) {
+        flush();
+        sink = writer;
+        formatter = new Formatter(writer);
+    }
+
+    /**
+     * Flushes the current sink and goes back to writing to System.out directly.
+     */
+    public static synchronized void useConsole() {
+        flush();
+        sink = null;
+        formatter = null;
+    }
+
+    /**
+     * Writes everything buffered in the current sink, to be called at command boundaries.
+     */
+    public static synchronized void flush() {
+        if (sink == null) return;
+        try {
+            sink.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a sink writing to standard output through a large buffer, bypassing the locking and autoflush of
+     * System.out.
+     *
+     * @param size the size of the buffer in characters.
+     * @return the sink.
+     */
+    public static Writer bufferedStdout(int size) {
+        return new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out), StandardCharsets.UTF_8), size);
+    }
+
+    /**
+     * Creates a sink encoding output straight into a byte buffer that is written to a channel when full.
+     *
+     * @param channel the channel, e.g. the channel of standard output or of a file.
+     * @param size    the size of the buffer in bytes.
+     * @return the sink.
+     */
+    public static Writer channel(WritableByteChannel channel, int size) {
+        return Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), size);
+    }
+
+    /**
+     * Creates a sink writing to the channel of standard output.
+     *
+     * @param size the size of the buffer in bytes.
+     * @return the sink.
+     */
+    public static Writer stdoutChannel(int size) {
+        return channel(new FileOutputStream(FileDescriptor.out).getChannel(), size);
+    }
+
+    /**
+     * Creates a sink that drops all output, for benchmarks.
+     *
+     * @return the sink.
+     */
+    public static Writer discard() {
+        return Writer.nullWriter();
+    }
+
+    /**
+     * Runs an action, collecting what it prints on the current thread instead of writing it out, so actions running
+     * concurrently can have their output written in a fixed order afterwards.
+     *
+     * @param action the action.
+     * @return the output of the action.
+     */
+    public static String capture(Runnable action) {
+        var previous = captured.get();
+        var out = new StringBuilder();
+        captured.set(out);
+        try {
+            action.run();
+        } finally {
+            if (previous == null) captured.remove();
+            else captured.set(previous);
+        }
+        return out.toString();
+    }
+
     public static void println(Object t) {
-        System.out.println(t);
+        var line = t + System.lineSeparator(); // Converted before locking, toString may take locks of its own
+        var out = captured.get();
+        if (out != null) {
+            out.append(line);
+            return;
+        }
+        synchronized (PrintUtils.class) {
+            if (sink == null) System.out.print(line);
+            else write(line); // One write, so the line and its separator stay together
+        }
     }
 
     public static void print(Object t) {
-        System.out.print(t);
+        var s = String.valueOf(t);
+        var out = captured.get();
+        if (out != null) {
+            out.append(s);
+            return;
+        }
+        synchronized (PrintUtils.class) {
+            if (sink == null) System.out.print(s);
+            else write(s);
+        }
     }
 
     public static void printf(String format, Object... args) {
-        System.out.printf(format, args);
+        var out = captured.get();
+        if (out != null) {
+            new Formatter(out).format(format, args);
+            return;
+        }
+        synchronized (PrintUtils.class) {
+            if (sink == null) System.out.printf(format, args);
+            else formatter.format(format, args);
+        }
+    }
+
+    /**
+     * Writes a string to the current sink.
+     *
+     * @param s the string.
+     */
+    private static void write(String s) {
+        try {
+            sink.write(s);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
 }